@@ -4,6 +4,7 @@
 #include <jni.h>
 #define _USE_MATH_DEFINES
 #include <math.h>
+#include <string.h>
 #include "jnibwapi_JNIBWAPI.h"
 
 #define JNI_NULL 0
@@ -32,10 +33,105 @@ std::map<int, Order> orderTypeMap;
 // region IDs
 std::map<BWTA::Region*, int> regionMap;
 
-// data buffer for c++ -> Java data
+// data buffer for c++ -> Java data. Per-frame queries write into this buffer and
+// return the number of ints written; Java reads them through a direct ByteBuffer
+// view (see getDataBuffer) so no Java array is allocated or copied.
 jint *intBuf;
 const int bufferSize = 5000000;
 
+// event buffer, separate from the data buffer because listeners query the bridge while events are
+// dispatched. Each event is eventSize ints: type, two params, then the offset and length of its text
+// in eventText (-1 and 0 if it has none). Java reads both through direct ByteBuffer views (see
+// getEventBuffer and getEventTextBuffer) when eventsOccurred is called.
+const int eventSize = 5;
+const int maxEvents = 4096;
+const int eventTextSize = 65536;
+jint *eventBuf;
+
+// keyboard state, stored after the events in the event buffer: keyMaskWords words with a bit set for
+// each key that is down, then keyMaskWords words with a bit set for each key pressed this frame
+const int keyMaskWords = 256 / 32;
+const int keyStateIndex = maxEvents * eventSize;
+char *eventText;
+int numEvents = 0;
+int eventTextLength = 0;
+jmethodID eventsCallback;
+
+// command buffer, which Java fills with unit commands to be executed as a batch (see
+// executeQueuedCommands). The header holds the number of queued commands and the number of commands
+// in the last executed batch. Each command is commandSize ints: unit ID, command type ID, target unit
+// ID, x, y and extra, followed by the success flag and error code written back when it is executed.
+const int commandHeaderSize = 2;
+const int commandSize = 8;
+const int maxCommands = 4096;
+jint *commandBuf;
+
+// previous unit records, so that only changes need to be sent each frame (see addUnitsDeltaToBuffer)
+const int numUnitAttributes = 73;
+const int unitDirtyWords = (numUnitAttributes + 31) / 32;
+const int unitFlagWords = 2;
+struct UnitRecord {
+	int generation;
+	bool added;
+	jint dirty[unitDirtyWords];
+	jint data[numUnitAttributes];
+};
+std::map<int, UnitRecord> unitRecords;
+int unitRecordGeneration = 0;
+
+// unit attribute groups which Java can subscribe to, matching the GROUP_ constants of jnibwapi.Unit.
+// Attributes of unsubscribed groups are not computed or sent. Subscriptions take effect at game start.
+const int unitCoreGroup = 0; // always sent
+const int unitPositionGroup = 1 << 0;
+const int unitCombatGroup = 1 << 1;
+const int unitOrdersGroup = 1 << 2;
+const int unitProductionGroup = 1 << 3;
+const int unitTimersGroup = 1 << 4;
+const int unitFlagsGroup = 1 << 5;
+const int unitResourcesGroup = 1 << 6;
+const int unitInitialGroup = 1 << 7;
+const int unitTransportGroup = 1 << 8;
+const int allUnitGroups = (1 << 9) - 1;
+const int unitAttributeGroup[numUnitAttributes] = {
+	unitCoreGroup, unitCoreGroup, unitCoreGroup, unitCoreGroup, // ID, replay ID, player, type
+	unitPositionGroup, unitPositionGroup, unitPositionGroup, unitPositionGroup, // position, tile position
+	unitPositionGroup, unitPositionGroup, unitPositionGroup, // angle, velocity
+	unitCombatGroup, unitCombatGroup, unitCombatGroup, // hit points, shields, energy
+	unitResourcesGroup, unitResourcesGroup, // resources, resource group
+	unitOrdersGroup, unitOrdersGroup, // last command frame, last command
+	unitCombatGroup, // last attacking player
+	unitInitialGroup, unitInitialGroup, unitInitialGroup, unitInitialGroup, // initial type, position
+	unitInitialGroup, unitInitialGroup, unitInitialGroup, // initial tile position, hit points, resources
+	unitCombatGroup, unitCombatGroup, unitCombatGroup, unitCombatGroup, unitCombatGroup, // kills, ammo
+	unitCombatGroup, unitCombatGroup, unitCombatGroup, unitCombatGroup, // cooldowns, defense matrix points
+	unitTimersGroup, unitTimersGroup, unitTimersGroup, unitTimersGroup, unitTimersGroup, // status timers
+	unitTimersGroup, unitTimersGroup, unitTimersGroup, unitTimersGroup, unitTimersGroup,
+	unitProductionGroup, unitProductionGroup, unitProductionGroup, unitProductionGroup, // build type, queue, tech, upgrade
+	unitProductionGroup, unitProductionGroup, unitProductionGroup, unitProductionGroup, // remaining times
+	unitProductionGroup, // build unit
+	unitOrdersGroup, unitOrdersGroup, unitOrdersGroup, // target, target position
+	unitOrdersGroup, unitOrdersGroup, unitOrdersGroup, // order, order target, secondary order
+	unitProductionGroup, unitProductionGroup, unitProductionGroup, unitProductionGroup, // rally, addon
+	unitTransportGroup, unitTransportGroup, unitTransportGroup, unitTransportGroup, // nydus, transport, loaded, carrier
+	unitProductionGroup, unitProductionGroup, // hatchery, larva
+	unitTransportGroup, // power up
+	unitFlagsGroup, unitFlagsGroup // flags
+};
+int unitAttributeGroups = allUnitGroups;
+int pendingUnitAttributeGroups = allUnitGroups;
+
+// previous research and upgrade status of each player, indexed by type ID, so that only transitions
+// need to be sent. The version is incremented whenever a transition is sent.
+const int maxTechRecordTypes = 256;
+struct PlayerTechRecord {
+	int version;
+	jint researched[maxTechRecordTypes];
+	jint researching[maxTechRecordTypes];
+	jint upgradeLevel[maxTechRecordTypes];
+	jint upgrading[maxTechRecordTypes];
+};
+std::map<int, PlayerTechRecord> playerTechRecords;
+
 // utility functions
 void drawHealth(void); 
 void drawTargets(void);
@@ -46,7 +142,10 @@ bool showIDs = false;
 
 void reconnect(void);
 void loadTypeData(void);
-bool keyState[256];
+void addEvent(int type, int param1, int param2);
+void addTextEvent(int type, const std::string& text);
+void flushEvents(void);
+int executeQueuedCommands(void);
 
 // conversion ratios
 double TO_DEGREES = 180.0 / M_PI;
@@ -68,11 +167,17 @@ JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_startClient(JNIEnv* env, jobject j
 	jmethodID gameStartCallback = env->GetMethodID(jc, "gameStarted", "()V");
 	jmethodID gameUpdateCallback = env->GetMethodID(jc, "gameUpdate", "()V");
 	jmethodID gameEndCallback = env->GetMethodID(jc, "gameEnded", "()V");
-	jmethodID eventCallback = env->GetMethodID(jc, "eventOccurred", "(IIILjava/lang/String;)V");
-	jmethodID keyPressCallback = env->GetMethodID(jc, "keyPressed", "(I)V");
+	eventsCallback = env->GetMethodID(jc, "eventsOccurred", "(I)V");
+	jmethodID keysPressedCallback = env->GetMethodID(jc, "keysPressed", "()V");
 
 	// allocate room for return data structure
 	intBuf = new jint[bufferSize];
+	eventBuf = new jint[keyStateIndex + 2 * keyMaskWords];
+	memset(eventBuf + keyStateIndex, 0, 2 * keyMaskWords * sizeof(jint));
+	eventText = new char[eventTextSize];
+	commandBuf = new jint[commandHeaderSize + maxCommands * commandSize];
+	commandBuf[0] = 0;
+	commandBuf[1] = 0;
 
 	// connet to BWAPI
 	BWAPI::BWAPI_init();
@@ -95,6 +200,9 @@ JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_startClient(JNIEnv* env, jobject j
 			}
 		}
 		javaPrint("Starting match!");
+		unitRecords.clear();
+		playerTechRecords.clear();
+		unitAttributeGroups = pendingUnitAttributeGroups;
 		env->CallObjectMethod(classref, gameStartCallback);
 
 		// in game
@@ -102,6 +210,23 @@ JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_startClient(JNIEnv* env, jobject j
 			// update client data before event callbacks
 			env->CallObjectMethod(classref, gameUpdateCallback);
 
+			// key state for this frame, filled before the events so that it is current
+			// during matchFrame, also when a full buffer is flushed early
+			jint* keysDown = eventBuf + keyStateIndex;
+			jint* keysPressed = keysDown + keyMaskWords;
+			bool anyKeyPressed = false;
+			for (int word = 0; word < keyMaskWords; ++word) {
+				unsigned int down = 0;
+				for (int bit = 0; bit < 32; ++bit) {
+					if (Broodwar->getKeyState(word * 32 + bit)) {
+						down |= 1u << bit;
+					}
+				}
+				keysPressed[word] = static_cast<jint>(down & ~static_cast<unsigned int>(keysDown[word]));
+				keysDown[word] = static_cast<jint>(down);
+				anyKeyPressed = anyKeyPressed || keysPressed[word] != 0;
+			}
+
 			// process events
 			// BWAPI will always issue a MatchStart event as the very first event of a match
 			// BWAPI will always issue a MatchFrame event as the very last event of a frame (second-last at MatchEnd)
@@ -109,91 +234,77 @@ JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_startClient(JNIEnv* env, jobject j
 			for (std::list<Event>::iterator e = Broodwar->getEvents().begin(); e != Broodwar->getEvents().end(); ++e) {
 				switch (e->getType()) {
 				case EventType::MatchStart:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), 0, 0, JNI_NULL);
+					addEvent(e->getType(), 0, 0);
 					break;
 				case EventType::MatchEnd:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->isWinner() ? 1 : 0, 0, JNI_NULL);
+					addEvent(e->getType(), e->isWinner() ? 1 : 0, 0);
 					break;
 				case EventType::MatchFrame:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), 0, 0, JNI_NULL);
+					addEvent(e->getType(), 0, 0);
 					break;
 				case EventType::MenuFrame:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), 0, 0, JNI_NULL);
+					addEvent(e->getType(), 0, 0);
 					break;
-				case EventType::SendText: {
-					jstring string = env->NewStringUTF(e->getText().c_str());
-					env->CallObjectMethod(classref, eventCallback, e->getType(), 0, 0, string);
-					env->DeleteLocalRef(string);
-					}
+				case EventType::SendText:
+					addTextEvent(e->getType(), e->getText());
 					break;
-				case EventType::ReceiveText: {
-					jstring string = env->NewStringUTF(e->getText().c_str());
-					env->CallObjectMethod(classref, eventCallback, e->getType(), 0, 0, string);
-					env->DeleteLocalRef(string);
-					}
+				case EventType::ReceiveText:
+					addTextEvent(e->getType(), e->getText());
 					break;
 				case EventType::PlayerLeft:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getPlayer()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getPlayer()->getID(), 0);
 					break;
 				case EventType::NukeDetect:
 					if (e->getPosition() != Positions::Unknown) {
-						env->CallObjectMethod(classref, eventCallback, e->getType(), e->getPosition().x(), e->getPosition().y(), JNI_NULL);
+						addEvent(e->getType(), e->getPosition().x(), e->getPosition().y());
 					} else {
-						env->CallObjectMethod(classref, eventCallback, e->getType(), -1, -1, JNI_NULL);
+						addEvent(e->getType(), -1, -1);
 					}
 					break;
 				case EventType::UnitDiscover:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getUnit()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getUnit()->getID(), 0);
 					break;
 				case EventType::UnitEvade:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getUnit()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getUnit()->getID(), 0);
 					break;
 				case EventType::UnitShow:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getUnit()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getUnit()->getID(), 0);
 					break;
 				case EventType::UnitHide:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getUnit()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getUnit()->getID(), 0);
 					break;
 				case EventType::UnitCreate:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getUnit()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getUnit()->getID(), 0);
 					break;
 				case EventType::UnitDestroy:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getUnit()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getUnit()->getID(), 0);
 					break;
 				case EventType::UnitMorph:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getUnit()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getUnit()->getID(), 0);
 					break;
 				case EventType::UnitRenegade:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getUnit()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getUnit()->getID(), 0);
 					break;
-				case EventType::SaveGame: {
-					jstring string = env->NewStringUTF(e->getText().c_str());
-					env->CallObjectMethod(classref, eventCallback, e->getType(), 0, 0, string);
-					env->DeleteLocalRef(string);
-					}
+				case EventType::SaveGame:
+					addTextEvent(e->getType(), e->getText());
 					break;
 				case EventType::UnitComplete:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getUnit()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getUnit()->getID(), 0);
 					break;
 				case EventType::PlayerDropped:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), e->getPlayer()->getID(), 0, JNI_NULL);
+					addEvent(e->getType(), e->getPlayer()->getID(), 0);
 					break;
 				case EventType::None:
-					env->CallObjectMethod(classref, eventCallback, e->getType(), 0, 0, JNI_NULL);
+					addEvent(e->getType(), 0, 0);
 					break;
 				}
 			}
+			// the events are passed to Java in one call per frame, in the order BWAPI issued them
+			flushEvents();
 
-			// check for key presses
-			for (int keyCode = 0; keyCode <= 0xff; ++keyCode) {	
-				if (Broodwar->getKeyState(keyCode)) {	
-					if (!keyState[keyCode]) {
-						env->CallObjectMethod(classref, keyPressCallback, keyCode);
-					}
-					keyState[keyCode] = true;
-				} else {
-					keyState[keyCode] = false;
-				}
+			// only call Java for key presses if a key was pressed this frame
+			if (anyKeyPressed) {
+				env->CallObjectMethod(classref, keysPressedCallback);
 			}
 
 			// draw commands
@@ -201,6 +312,9 @@ JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_startClient(JNIEnv* env, jobject j
 			if (showTargets) drawTargets();
 			if (showIDs) drawIDs();
 
+			// commands queued but not yet executed by Java are executed before the frame ends
+			executeQueuedCommands();
+
 			// wait for the next frame
 			BWAPI::BWAPIClient.update();
 			if (!BWAPI::BWAPIClient.isConnected()) {
@@ -222,6 +336,54 @@ void reconnect(void)
 	}
 }
 
+/**
+* Appends an event to the event buffer, first passing the buffered events to Java if it is full.
+*/
+void addEvent(int type, int param1, int param2)
+{
+	if (numEvents == maxEvents) {
+		flushEvents();
+	}
+	int index = numEvents++ * eventSize;
+	eventBuf[index++] = type;
+	eventBuf[index++] = param1;
+	eventBuf[index++] = param2;
+	eventBuf[index++] = -1;
+	eventBuf[index++] = 0;
+}
+
+/**
+* Appends an event with text to the event buffer, first passing the buffered events to Java if
+* either the events or the text would not fit.
+*/
+void addTextEvent(int type, const std::string& text)
+{
+	int textLength = static_cast<int>(text.size()) < eventTextSize ? static_cast<int>(text.size()) : eventTextSize;
+	if (numEvents == maxEvents || eventTextLength + textLength > eventTextSize) {
+		flushEvents();
+	}
+	int index = numEvents++ * eventSize;
+	eventBuf[index++] = type;
+	eventBuf[index++] = 0;
+	eventBuf[index++] = 0;
+	eventBuf[index++] = eventTextLength;
+	eventBuf[index++] = textLength;
+	memcpy(eventText + eventTextLength, text.data(), textLength);
+	eventTextLength += textLength;
+}
+
+/**
+* Passes the buffered events to Java in a single call and empties the event buffer.
+*/
+void flushEvents(void)
+{
+	if (numEvents > 0) {
+		jEnv->CallObjectMethod(classref, eventsCallback, numEvents);
+	}
+	numEvents = 0;
+	eventTextLength = 0;
+}
+
 void javaPrint(const char* msg) 
 {
 	jEnv->CallObjectMethod(classref, printCallback, jEnv->NewStringUTF(msg));
@@ -334,11 +496,6 @@ JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_leaveGame(JNIEnv* env, jobject jOb
 // Game state queries
 /*****************************************************************************************************************/
 
-JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_getFrame(JNIEnv* env, jobject jObj) 
-{
-	return Broodwar->getFrameCount();
-}
-
 JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_getReplayFrameTotal(JNIEnv* env, jobject jObj) 
 {
 	return Broodwar->getReplayFrameCount();
@@ -375,10 +532,28 @@ JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getPlayersData(JNIEnv* env, j
 	return result;
 }
 
-JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getPlayerUpdate(JNIEnv* env, jobject jObj, jint playerID)
+JNIEXPORT jobject JNICALL Java_jnibwapi_JNIBWAPI_getDataBuffer(JNIEnv* env, jobject jObj)
+{
+	return env->NewDirectByteBuffer(intBuf, bufferSize * sizeof(jint));
+}
+
+JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_subscribeUnitAttributes(JNIEnv* env, jobject jObj, jint groups)
+{
+	pendingUnitAttributeGroups = groups & allUnitGroups;
+}
+
+JNIEXPORT jobject JNICALL Java_jnibwapi_JNIBWAPI_getEventBuffer(JNIEnv* env, jobject jObj)
+{
+	return env->NewDirectByteBuffer(eventBuf, (keyStateIndex + 2 * keyMaskWords) * sizeof(jint));
+}
+
+JNIEXPORT jobject JNICALL Java_jnibwapi_JNIBWAPI_getEventTextBuffer(JNIEnv* env, jobject jObj)
+{
+	return env->NewDirectByteBuffer(eventText, eventTextSize);
+}
+
+int addPlayerUpdateToBuffer(Player* p, int index)
 {
-	int index = 0;
-	Player* p = Broodwar->getPlayer(playerID);
 	intBuf[index++] = p->minerals();
 	intBuf[index++] = p->gas();
 	intBuf[index++] = p->supplyUsed();
@@ -390,9 +565,7 @@ JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getPlayerUpdate(JNIEnv* env,
 	intBuf[index++] = p->getBuildingScore();
 	intBuf[index++] = p->getRazingScore();
 
-	jintArray result =env->NewIntArray(index);
-	env->SetIntArrayRegion(result, 0, index, intBuf);
-	return result;
+	return index;
 }
 
 JNIEXPORT jbyteArray JNICALL Java_jnibwapi_JNIBWAPI_getPlayerName(JNIEnv* env, jobject jObj, jint playerID)
@@ -404,38 +577,60 @@ JNIEXPORT jbyteArray JNICALL Java_jnibwapi_JNIBWAPI_getPlayerName(JNIEnv* env, j
 	return jbArray;
 }
 
-JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getResearchStatus(JNIEnv* env, jobject jObj, jint playerID)
+// Writes the number of tech types whose status changed since the previous call, then the ID, researched
+// and researching status of each
+int addResearchChangesToBuffer(Player* p, PlayerTechRecord& record, int index)
 {
-	int index = 0;
-	Player* p = Broodwar->getPlayer(playerID);
-
-	std::set<TechType> techTypes = TechTypes::allTechTypes();
-	for (std::set<TechType>::iterator i = techTypes.begin(); i != techTypes.end(); ++i) {
-		intBuf[index++] = i->getID();
-		intBuf[index++] = p->hasResearched((*i)) ? 1 : 0;
-		intBuf[index++] = p->isResearching((*i)) ? 1 : 0;
+	const std::set<TechType>& techTypes = TechTypes::allTechTypes();
+	int countIndex = index++;
+	int count = 0;
+	for (std::set<TechType>::const_iterator i = techTypes.begin(); i != techTypes.end(); ++i) {
+		int id = i->getID();
+		if (id < 0 || id >= maxTechRecordTypes) {
+			continue;
+		}
+		jint researched = p->hasResearched((*i)) ? 1 : 0;
+		jint researching = p->isResearching((*i)) ? 1 : 0;
+		if (researched != record.researched[id] || researching != record.researching[id]) {
+			record.researched[id] = researched;
+			record.researching[id] = researching;
+			intBuf[index++] = id;
+			intBuf[index++] = researched;
+			intBuf[index++] = researching;
+			count++;
+		}
 	}
+	intBuf[countIndex] = count;
 
-	jintArray result = env->NewIntArray(index);
-	env->SetIntArrayRegion(result, 0, index, intBuf);
-	return result;
+	return index;
 }
 
-JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getUpgradeStatus(JNIEnv* env, jobject jObj, jint playerID)
+// Writes the number of upgrade types whose status changed since the previous call, then the ID, level
+// and upgrading status of each
+int addUpgradeChangesToBuffer(Player* p, PlayerTechRecord& record, int index)
 {
-	int index = 0;
-	Player* p = Broodwar->getPlayer(playerID);
-
-	std::set<UpgradeType> upTypes = UpgradeTypes::allUpgradeTypes();
-	for (std::set<UpgradeType>::iterator i = upTypes.begin(); i != upTypes.end(); ++i) {
-		intBuf[index++] = i->getID();
-		intBuf[index++] = p->getUpgradeLevel((*i));
-		intBuf[index++] = p->isUpgrading((*i)) ? 1 : 0;
+	const std::set<UpgradeType>& upTypes = UpgradeTypes::allUpgradeTypes();
+	int countIndex = index++;
+	int count = 0;
+	for (std::set<UpgradeType>::const_iterator i = upTypes.begin(); i != upTypes.end(); ++i) {
+		int id = i->getID();
+		if (id < 0 || id >= maxTechRecordTypes) {
+			continue;
+		}
+		jint level = p->getUpgradeLevel((*i));
+		jint upgrading = p->isUpgrading((*i)) ? 1 : 0;
+		if (level != record.upgradeLevel[id] || upgrading != record.upgrading[id]) {
+			record.upgradeLevel[id] = level;
+			record.upgrading[id] = upgrading;
+			intBuf[index++] = id;
+			intBuf[index++] = level;
+			intBuf[index++] = upgrading;
+			count++;
+		}
 	}
+	intBuf[countIndex] = count;
 
-	jintArray result = env->NewIntArray(index);
-	env->SetIntArrayRegion(result, 0, index, intBuf);
-	return result;
+	return index;
 }
 
 JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getUnitTypes(JNIEnv* env, jobject jObj) 
@@ -778,172 +973,372 @@ JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getOrderTypes(JNIEnv* env, jo
 	return result;
 }
 
-int addUnitDataToBuffer(Unit* u, int index)
-{
-	intBuf[index++] = u->getID();
-	intBuf[index++] = u->getReplayID();
-	intBuf[index++] = u->getPlayer()->getID();
-	intBuf[index++] = u->getType().getID();
-	intBuf[index++] = u->getPosition().x();
-	intBuf[index++] = u->getPosition().y();
-	intBuf[index++] = u->getTilePosition().x();
-	intBuf[index++] = u->getTilePosition().y();
-	intBuf[index++] = static_cast<int>(TO_DEGREES * u->getAngle());
-	intBuf[index++] = static_cast<int>(fixedScale * u->getVelocityX());
-	intBuf[index++] = static_cast<int>(fixedScale * u->getVelocityY());
-	intBuf[index++] = u->getHitPoints();
-	intBuf[index++] = u->getShields();
-	intBuf[index++] = u->getEnergy();
-	intBuf[index++] = u->getResources();
-	intBuf[index++] = u->getResourceGroup();
-	intBuf[index++] = u->getLastCommandFrame();
-	intBuf[index++] = u->getLastCommand().getType().getID();
-	// getLastAttackingPlayer doesn't work as documented, have to check for "None" player
-	intBuf[index++] = (u->getLastAttackingPlayer() != NULL
-		&& u->getLastAttackingPlayer()->getType() != PlayerTypes::None)
-		? u->getLastAttackingPlayer()->getID() : -1;
-	intBuf[index++] = u->getInitialType().getID();
-	intBuf[index++] = u->getInitialPosition().x();
-	intBuf[index++] = u->getInitialPosition().y();
-	intBuf[index++] = u->getInitialTilePosition().x();
-	intBuf[index++] = u->getInitialTilePosition().y();
-	intBuf[index++] = u->getInitialHitPoints();
-	intBuf[index++] = u->getInitialResources();
-	intBuf[index++] = u->getKillCount();
-	intBuf[index++] = u->getAcidSporeCount();
-	intBuf[index++] = u->getInterceptorCount();
-	intBuf[index++] = u->getScarabCount();
-	intBuf[index++] = u->getSpiderMineCount();
-	intBuf[index++] = u->getGroundWeaponCooldown();
-	intBuf[index++] = u->getAirWeaponCooldown();
-	intBuf[index++] = u->getSpellCooldown();
-	intBuf[index++] = u->getDefenseMatrixPoints();
-	intBuf[index++] = u->getDefenseMatrixTimer();
-	intBuf[index++] = u->getEnsnareTimer();
-	intBuf[index++] = u->getIrradiateTimer();
-	intBuf[index++] = u->getLockdownTimer();
-	intBuf[index++] = u->getMaelstromTimer();
-	intBuf[index++] = u->getOrderTimer();
-	intBuf[index++] = u->getPlagueTimer();
-	intBuf[index++] = u->getRemoveTimer();
-	intBuf[index++] = u->getStasisTimer();
-	intBuf[index++] = u->getStimTimer();
-	intBuf[index++] = u->getBuildType().getID();
-	intBuf[index++] = u->getTrainingQueue().size();
-	intBuf[index++] = u->getTech().getID();
-	intBuf[index++] = u->getUpgrade().getID();
-	intBuf[index++] = u->getRemainingBuildTime();
-	intBuf[index++] = u->getRemainingTrainTime();
-	intBuf[index++] = u->getRemainingResearchTime();
-	intBuf[index++] = u->getRemainingUpgradeTime();
-	intBuf[index++] = (u->getBuildUnit() != NULL) ? u->getBuildUnit()->getID() : -1;
-	intBuf[index++] = (u->getTarget() != NULL) ? u->getTarget()->getID() : -1;
-	intBuf[index++] = u->getTargetPosition().x();
-	intBuf[index++] = u->getTargetPosition().y();
-	intBuf[index++] = u->getOrder().getID();
-	intBuf[index++] = (u->getOrderTarget() != NULL) ? u->getOrderTarget()->getID() : -1;
-	intBuf[index++] = u->getSecondaryOrder().getID();
-	intBuf[index++] = u->getRallyPosition().x();
-	intBuf[index++] = u->getRallyPosition().y();
-	intBuf[index++] = (u->getRallyUnit() != NULL) ? u->getRallyUnit()->getID() : -1;
-	intBuf[index++] = (u->getAddon() != NULL) ? u->getAddon()->getID() : -1;
-	intBuf[index++] = (u->getNydusExit() != NULL) ? u->getNydusExit()->getID() : -1;
-	intBuf[index++] = (u->getTransport() != NULL) ? u->getTransport()->getID() : -1;
-	intBuf[index++] = u->getLoadedUnits().size(); // see separate getLoadedUnits method
-	intBuf[index++] = (u->getCarrier() != NULL) ? u->getCarrier()->getID() : -1;
-	// see getInterceptorCount and separate getInterceptors method
-	intBuf[index++] = (u->getHatchery() != NULL) ? u->getHatchery()->getID() : -1;
-	intBuf[index++] = u->getLarva().size(); // see separate getLarva method
-	intBuf[index++] = (u->getPowerUp() != NULL) ? u->getPowerUp()->getID() : -1;
-	intBuf[index++] = u->exists() ? 1 : 0;
-	intBuf[index++] = u->hasNuke() ? 1 : 0;
-	intBuf[index++] = u->isAccelerating() ? 1 : 0;
-	intBuf[index++] = u->isAttacking() ? 1 : 0;
-	intBuf[index++] = u->isAttackFrame() ? 1 : 0;
-	intBuf[index++] = u->isBeingConstructed() ? 1 : 0;
-	intBuf[index++] = u->isBeingGathered() ? 1 : 0;
-	intBuf[index++] = u->isBeingHealed() ? 1 : 0;
-	intBuf[index++] = u->isBlind() ? 1 : 0;
-	intBuf[index++] = u->isBraking() ? 1 : 0;
-	intBuf[index++] = u->isBurrowed() ? 1 : 0;
-	intBuf[index++] = u->isCarryingGas() ? 1 : 0;
-	intBuf[index++] = u->isCarryingMinerals() ? 1 : 0;
-	intBuf[index++] = u->isCloaked() ? 1 : 0;
-	intBuf[index++] = u->isCompleted() ? 1 : 0;
-	intBuf[index++] = u->isConstructing() ? 1 : 0;
-	intBuf[index++] = u->isDefenseMatrixed() ? 1 : 0;
-	intBuf[index++] = u->isDetected() ? 1 : 0;
-	intBuf[index++] = u->isEnsnared() ? 1 : 0;
-	intBuf[index++] = u->isFollowing() ? 1 : 0;
-	intBuf[index++] = u->isGatheringGas() ? 1 : 0;
-	intBuf[index++] = u->isGatheringMinerals() ? 1 : 0;
-	intBuf[index++] = u->isHallucination() ? 1 : 0;
-	intBuf[index++] = u->isHoldingPosition() ? 1 : 0;
-	intBuf[index++] = u->isIdle() ? 1 : 0;
-	intBuf[index++] = u->isInterruptible() ? 1 : 0;
-	intBuf[index++] = u->isInvincible() ? 1 : 0;
-	intBuf[index++] = u->isIrradiated() ? 1 : 0;
-	intBuf[index++] = u->isLifted() ? 1 : 0;
-	intBuf[index++] = u->isLoaded() ? 1 : 0;
-	intBuf[index++] = u->isLockedDown() ? 1 : 0;
-	intBuf[index++] = u->isMaelstrommed() ? 1 : 0;
-	intBuf[index++] = u->isMorphing() ? 1 : 0;
-	intBuf[index++] = u->isMoving() ? 1 : 0;
-	intBuf[index++] = u->isParasited() ? 1 : 0;
-	intBuf[index++] = u->isPatrolling() ? 1 : 0;
-	intBuf[index++] = u->isPlagued() ? 1 : 0;
-	intBuf[index++] = u->isRepairing() ? 1 : 0;
-	intBuf[index++] = u->isSelected() ? 1 : 0;
-	intBuf[index++] = u->isSieged() ? 1 : 0;
-	intBuf[index++] = u->isStartingAttack() ? 1 : 0;
-	intBuf[index++] = u->isStasised() ? 1 : 0;
-	intBuf[index++] = u->isStimmed() ? 1 : 0;
-	intBuf[index++] = u->isStuck() ? 1 : 0;
-	intBuf[index++] = u->isTraining() ? 1 : 0;
-	intBuf[index++] = u->isUnderAttack() ? 1 : 0;
-	intBuf[index++] = u->isUnderDarkSwarm() ? 1 : 0;
-	intBuf[index++] = u->isUnderDisruptionWeb() ? 1 : 0;
-	intBuf[index++] = u->isUnderStorm() ? 1 : 0;
-	intBuf[index++] = u->isUnpowered() ? 1 : 0;
-	intBuf[index++] = u->isUpgrading() ? 1 : 0;
-	intBuf[index++] = u->isVisible() ? 1 : 0;
+// sets the next bit of a packed flags bitset
+void addUnitFlag(jint* flags, int& flag, bool value)
+{
+	if (value) {
+		flags[flag / 32] |= static_cast<jint>(1u << (flag % 32));
+	}
+	flag++;
+}
+
+int addZerosToBuffer(jint* buffer, int index, int count)
+{
+	for (int i = 0; i < count; i++) {
+		buffer[index++] = 0;
+	}
+	return index;
+}
+
+// Writes the unit's full record. Attributes of unsubscribed groups are written as zero without being computed.
+int addUnitDataToBuffer(Unit* u, jint* buffer, int index)
+{
+	buffer[index++] = u->getID();
+	buffer[index++] = u->getReplayID();
+	buffer[index++] = u->getPlayer()->getID();
+	buffer[index++] = u->getType().getID();
+	if (unitAttributeGroups & unitPositionGroup) {
+		buffer[index++] = u->getPosition().x();
+		buffer[index++] = u->getPosition().y();
+		buffer[index++] = u->getTilePosition().x();
+		buffer[index++] = u->getTilePosition().y();
+		buffer[index++] = static_cast<int>(TO_DEGREES * u->getAngle());
+		buffer[index++] = static_cast<int>(fixedScale * u->getVelocityX());
+		buffer[index++] = static_cast<int>(fixedScale * u->getVelocityY());
+	} else {
+		index = addZerosToBuffer(buffer, index, 7);
+	}
+	if (unitAttributeGroups & unitCombatGroup) {
+		buffer[index++] = u->getHitPoints();
+		buffer[index++] = u->getShields();
+		buffer[index++] = u->getEnergy();
+	} else {
+		index = addZerosToBuffer(buffer, index, 3);
+	}
+	if (unitAttributeGroups & unitResourcesGroup) {
+		buffer[index++] = u->getResources();
+		buffer[index++] = u->getResourceGroup();
+	} else {
+		index = addZerosToBuffer(buffer, index, 2);
+	}
+	if (unitAttributeGroups & unitOrdersGroup) {
+		buffer[index++] = u->getLastCommandFrame();
+		buffer[index++] = u->getLastCommand().getType().getID();
+	} else {
+		index = addZerosToBuffer(buffer, index, 2);
+	}
+	if (unitAttributeGroups & unitCombatGroup) {
+		// getLastAttackingPlayer doesn't work as documented, have to check for "None" player
+		buffer[index++] = (u->getLastAttackingPlayer() != NULL
+			&& u->getLastAttackingPlayer()->getType() != PlayerTypes::None)
+			? u->getLastAttackingPlayer()->getID() : -1;
+	} else {
+		index = addZerosToBuffer(buffer, index, 1);
+	}
+	if (unitAttributeGroups & unitInitialGroup) {
+		buffer[index++] = u->getInitialType().getID();
+		buffer[index++] = u->getInitialPosition().x();
+		buffer[index++] = u->getInitialPosition().y();
+		buffer[index++] = u->getInitialTilePosition().x();
+		buffer[index++] = u->getInitialTilePosition().y();
+		buffer[index++] = u->getInitialHitPoints();
+		buffer[index++] = u->getInitialResources();
+	} else {
+		index = addZerosToBuffer(buffer, index, 7);
+	}
+	if (unitAttributeGroups & unitCombatGroup) {
+		buffer[index++] = u->getKillCount();
+		buffer[index++] = u->getAcidSporeCount();
+		buffer[index++] = u->getInterceptorCount();
+		buffer[index++] = u->getScarabCount();
+		buffer[index++] = u->getSpiderMineCount();
+		buffer[index++] = u->getGroundWeaponCooldown();
+		buffer[index++] = u->getAirWeaponCooldown();
+		buffer[index++] = u->getSpellCooldown();
+		buffer[index++] = u->getDefenseMatrixPoints();
+	} else {
+		index = addZerosToBuffer(buffer, index, 9);
+	}
+	if (unitAttributeGroups & unitTimersGroup) {
+		buffer[index++] = u->getDefenseMatrixTimer();
+		buffer[index++] = u->getEnsnareTimer();
+		buffer[index++] = u->getIrradiateTimer();
+		buffer[index++] = u->getLockdownTimer();
+		buffer[index++] = u->getMaelstromTimer();
+		buffer[index++] = u->getOrderTimer();
+		buffer[index++] = u->getPlagueTimer();
+		buffer[index++] = u->getRemoveTimer();
+		buffer[index++] = u->getStasisTimer();
+		buffer[index++] = u->getStimTimer();
+	} else {
+		index = addZerosToBuffer(buffer, index, 10);
+	}
+	if (unitAttributeGroups & unitProductionGroup) {
+		buffer[index++] = u->getBuildType().getID();
+		buffer[index++] = u->getTrainingQueue().size();
+		buffer[index++] = u->getTech().getID();
+		buffer[index++] = u->getUpgrade().getID();
+		buffer[index++] = u->getRemainingBuildTime();
+		buffer[index++] = u->getRemainingTrainTime();
+		buffer[index++] = u->getRemainingResearchTime();
+		buffer[index++] = u->getRemainingUpgradeTime();
+		buffer[index++] = (u->getBuildUnit() != NULL) ? u->getBuildUnit()->getID() : -1;
+	} else {
+		index = addZerosToBuffer(buffer, index, 9);
+	}
+	if (unitAttributeGroups & unitOrdersGroup) {
+		buffer[index++] = (u->getTarget() != NULL) ? u->getTarget()->getID() : -1;
+		buffer[index++] = u->getTargetPosition().x();
+		buffer[index++] = u->getTargetPosition().y();
+		buffer[index++] = u->getOrder().getID();
+		buffer[index++] = (u->getOrderTarget() != NULL) ? u->getOrderTarget()->getID() : -1;
+		buffer[index++] = u->getSecondaryOrder().getID();
+	} else {
+		index = addZerosToBuffer(buffer, index, 6);
+	}
+	if (unitAttributeGroups & unitProductionGroup) {
+		buffer[index++] = u->getRallyPosition().x();
+		buffer[index++] = u->getRallyPosition().y();
+		buffer[index++] = (u->getRallyUnit() != NULL) ? u->getRallyUnit()->getID() : -1;
+		buffer[index++] = (u->getAddon() != NULL) ? u->getAddon()->getID() : -1;
+	} else {
+		index = addZerosToBuffer(buffer, index, 4);
+	}
+	if (unitAttributeGroups & unitTransportGroup) {
+		buffer[index++] = (u->getNydusExit() != NULL) ? u->getNydusExit()->getID() : -1;
+		buffer[index++] = (u->getTransport() != NULL) ? u->getTransport()->getID() : -1;
+		buffer[index++] = u->getLoadedUnits().size(); // see separate getLoadedUnits method
+		buffer[index++] = (u->getCarrier() != NULL) ? u->getCarrier()->getID() : -1;
+		// see getInterceptorCount and separate getInterceptors method
+	} else {
+		index = addZerosToBuffer(buffer, index, 4);
+	}
+	if (unitAttributeGroups & unitProductionGroup) {
+		buffer[index++] = (u->getHatchery() != NULL) ? u->getHatchery()->getID() : -1;
+		buffer[index++] = u->getLarva().size(); // see separate getLarva method
+	} else {
+		index = addZerosToBuffer(buffer, index, 2);
+	}
+	if (unitAttributeGroups & unitTransportGroup) {
+		buffer[index++] = (u->getPowerUp() != NULL) ? u->getPowerUp()->getID() : -1;
+	} else {
+		index = addZerosToBuffer(buffer, index, 1);
+	}
+	if (unitAttributeGroups & unitFlagsGroup) {
+		// boolean attributes are packed into two words, one bit each in this order
+		jint flags[unitFlagWords] = { 0, 0 };
+		int flag = 0;
+		addUnitFlag(flags, flag, u->exists());
+		addUnitFlag(flags, flag, u->hasNuke());
+		addUnitFlag(flags, flag, u->isAccelerating());
+		addUnitFlag(flags, flag, u->isAttacking());
+		addUnitFlag(flags, flag, u->isAttackFrame());
+		addUnitFlag(flags, flag, u->isBeingConstructed());
+		addUnitFlag(flags, flag, u->isBeingGathered());
+		addUnitFlag(flags, flag, u->isBeingHealed());
+		addUnitFlag(flags, flag, u->isBlind());
+		addUnitFlag(flags, flag, u->isBraking());
+		addUnitFlag(flags, flag, u->isBurrowed());
+		addUnitFlag(flags, flag, u->isCarryingGas());
+		addUnitFlag(flags, flag, u->isCarryingMinerals());
+		addUnitFlag(flags, flag, u->isCloaked());
+		addUnitFlag(flags, flag, u->isCompleted());
+		addUnitFlag(flags, flag, u->isConstructing());
+		addUnitFlag(flags, flag, u->isDefenseMatrixed());
+		addUnitFlag(flags, flag, u->isDetected());
+		addUnitFlag(flags, flag, u->isEnsnared());
+		addUnitFlag(flags, flag, u->isFollowing());
+		addUnitFlag(flags, flag, u->isGatheringGas());
+		addUnitFlag(flags, flag, u->isGatheringMinerals());
+		addUnitFlag(flags, flag, u->isHallucination());
+		addUnitFlag(flags, flag, u->isHoldingPosition());
+		addUnitFlag(flags, flag, u->isIdle());
+		addUnitFlag(flags, flag, u->isInterruptible());
+		addUnitFlag(flags, flag, u->isInvincible());
+		addUnitFlag(flags, flag, u->isIrradiated());
+		addUnitFlag(flags, flag, u->isLifted());
+		addUnitFlag(flags, flag, u->isLoaded());
+		addUnitFlag(flags, flag, u->isLockedDown());
+		addUnitFlag(flags, flag, u->isMaelstrommed());
+		addUnitFlag(flags, flag, u->isMorphing());
+		addUnitFlag(flags, flag, u->isMoving());
+		addUnitFlag(flags, flag, u->isParasited());
+		addUnitFlag(flags, flag, u->isPatrolling());
+		addUnitFlag(flags, flag, u->isPlagued());
+		addUnitFlag(flags, flag, u->isRepairing());
+		addUnitFlag(flags, flag, u->isSelected());
+		addUnitFlag(flags, flag, u->isSieged());
+		addUnitFlag(flags, flag, u->isStartingAttack());
+		addUnitFlag(flags, flag, u->isStasised());
+		addUnitFlag(flags, flag, u->isStimmed());
+		addUnitFlag(flags, flag, u->isStuck());
+		addUnitFlag(flags, flag, u->isTraining());
+		addUnitFlag(flags, flag, u->isUnderAttack());
+		addUnitFlag(flags, flag, u->isUnderDarkSwarm());
+		addUnitFlag(flags, flag, u->isUnderDisruptionWeb());
+		addUnitFlag(flags, flag, u->isUnderStorm());
+		addUnitFlag(flags, flag, u->isUnpowered());
+		addUnitFlag(flags, flag, u->isUpgrading());
+		addUnitFlag(flags, flag, u->isVisible());
+		for (int i = 0; i < unitFlagWords; i++) {
+			buffer[index++] = flags[i];
+		}
+	} else {
+		index = addZerosToBuffer(buffer, index, unitFlagWords);
+	}
 	return index;
 }
 
 /**
-* Returns the list of active units in the game. 
+* Writes the changes to the active units since the previous call to the data buffer, starting at index,
+* and returns the index after them. The first call after unitRecords is cleared reports every unit as added.
 *
-* Each unit takes up a fixed number of integer values. Currently: 123
+* Layout:
+*   removed count, then the ID of each removed unit
+*   added count, then the record of each added unit: its ID, then only the attributes of subscribed groups
+*   changed count, then for each changed unit: ID, unitDirtyWords bitmask words (bit n of word n / 32
+*   set if attribute n changed), then the new value of each changed attribute in attribute order
 */
-JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getAllUnitsData(JNIEnv* env, jobject jObj) 
+int addUnitsDeltaToBuffer(int index)
 {
-	int index = 0;
+	int generation = ++unitRecordGeneration;
+	jint current[numUnitAttributes];
 
+	// compare each unit against its previous record
 	std::set<Unit*> units = Broodwar->getAllUnits();
 	for (std::set<Unit*>::iterator i = units.begin(); i != units.end(); ++i) {
-		index = addUnitDataToBuffer(*i, index);
+		addUnitDataToBuffer(*i, current, 0);
+		std::map<int, UnitRecord>::iterator found = unitRecords.find((*i)->getID());
+		if (found == unitRecords.end()) {
+			UnitRecord& record = unitRecords[(*i)->getID()];
+			record.added = true;
+			memcpy(record.data, current, sizeof(current));
+			record.generation = generation;
+			continue;
+		}
+		UnitRecord& record = found->second;
+		record.added = false;
+		memset(record.dirty, 0, sizeof(record.dirty));
+		for (int attribute = 0; attribute < numUnitAttributes; ++attribute) {
+			if (record.data[attribute] != current[attribute]) {
+				record.dirty[attribute / 32] |= 1 << (attribute % 32);
+				record.data[attribute] = current[attribute];
+			}
+		}
+		record.generation = generation;
 	}
 
-	jintArray result = env->NewIntArray(index);
-	env->SetIntArrayRegion(result, 0, index, intBuf);
-	return result;
+	// units which were not seen this time have been removed
+	int countIndex = index++;
+	intBuf[countIndex] = 0;
+	for (std::map<int, UnitRecord>::iterator i = unitRecords.begin(); i != unitRecords.end();) {
+		if (i->second.generation != generation) {
+			intBuf[index++] = i->first;
+			intBuf[countIndex]++;
+			unitRecords.erase(i++);
+		} else {
+			++i;
+		}
+	}
+
+	countIndex = index++;
+	intBuf[countIndex] = 0;
+	for (std::map<int, UnitRecord>::iterator i = unitRecords.begin(); i != unitRecords.end(); ++i) {
+		if (i->second.added) {
+			for (int attribute = 0; attribute < numUnitAttributes; ++attribute) {
+				if (attribute == 0 || unitAttributeGroup[attribute] == unitCoreGroup
+					|| (unitAttributeGroups & unitAttributeGroup[attribute]) != 0) {
+					intBuf[index++] = i->second.data[attribute];
+				}
+			}
+			intBuf[countIndex]++;
+		}
+	}
+
+	countIndex = index++;
+	intBuf[countIndex] = 0;
+	for (std::map<int, UnitRecord>::iterator i = unitRecords.begin(); i != unitRecords.end(); ++i) {
+		if (i->second.added) {
+			continue;
+		}
+		bool changed = false;
+		for (int word = 0; word < unitDirtyWords; ++word) {
+			changed |= i->second.dirty[word] != 0;
+		}
+		if (!changed) {
+			continue;
+		}
+		intBuf[index++] = i->first;
+		for (int word = 0; word < unitDirtyWords; ++word) {
+			intBuf[index++] = i->second.dirty[word];
+		}
+		for (int attribute = 0; attribute < numUnitAttributes; ++attribute) {
+			if ((i->second.dirty[attribute / 32] & (1 << (attribute % 32))) != 0) {
+				intBuf[index++] = i->second.data[attribute];
+			}
+		}
+		intBuf[countIndex]++;
+	}
+
+	return index;
+}
+
+/**
+* Writes everything Java needs to update its game state each frame to the data buffer, so that a single
+* call replaces one call per query. Returns the number of ints written.
+*
+* Layout:
+*   header: frame count, number of player blocks
+*   player blocks (self, or every player in replays): player ID, resources and scores (10 ints),
+*     tech version, research changes (see addResearchChangesToBuffer), upgrade changes (see
+*     addUpgradeChangesToBuffer)
+*   unit block: the unit delta (see addUnitsDeltaToBuffer)
+*/
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_getFrameSnapshot(JNIEnv* env, jobject jObj)
+{
+	int index = 0;
+	intBuf[index++] = Broodwar->getFrameCount();
+
+	// there is no self in replays, so every player is updated instead
+	std::set<Player*> players;
+	if (Broodwar->isReplay()) {
+		players = Broodwar->getPlayers();
+	} else {
+		players.insert(Broodwar->self());
+	}
+	intBuf[index++] = players.size();
+	for (std::set<Player*>::iterator i = players.begin(); i != players.end(); ++i) {
+		intBuf[index++] = (*i)->getID();
+		index = addPlayerUpdateToBuffer(*i, index);
+		// a new record is value-initialized, so everything which is not zero is sent at first
+		PlayerTechRecord& record = playerTechRecords[(*i)->getID()];
+		int versionIndex = index++;
+		int researchIndex = index;
+		index = addResearchChangesToBuffer(*i, record, index);
+		int upgradeIndex = index;
+		index = addUpgradeChangesToBuffer(*i, record, index);
+		if (intBuf[researchIndex] != 0 || intBuf[upgradeIndex] != 0) {
+			record.version++;
+		}
+		intBuf[versionIndex] = record.version;
+	}
+
+	return addUnitsDeltaToBuffer(index);
 }
 
 /**
 * Each unit takes up a fixed number of integer values (based on method above). Currently: 123
 */
-JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getStaticNeutralUnitsData(JNIEnv* env, jobject jObj) 
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_getStaticNeutralUnitsData(JNIEnv* env, jobject jObj) 
 {
 	int index = 0;
 
 	std::set<Unit*> units = Broodwar->getStaticNeutralUnits();
 	for (std::set<Unit*>::iterator i = units.begin(); i != units.end(); ++i) {
-		index = addUnitDataToBuffer(*i, index);
+		index = addUnitDataToBuffer(*i, intBuf, index);
 	}
 
-	jintArray result = env->NewIntArray(index);
-	env->SetIntArrayRegion(result, 0, index, intBuf);
-	return result;
+	return index;
 }
 
 JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getLoadedUnits(JNIEnv* env, jobject, jint unitID)
@@ -1219,6 +1614,108 @@ JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getUnitIdsOnTile(JNIEnv * env
 	return result;
 }
 
+// filter bits of the spatial unit queries, matching jnibwapi.util.UnitFilter
+const int unitFilterSelf = 1 << 0;
+const int unitFilterAllied = 1 << 1;
+const int unitFilterEnemy = 1 << 2;
+const int unitFilterNeutral = 1 << 3;
+const int unitFilterAir = 1 << 4;
+const int unitFilterGround = 1 << 5;
+
+bool matchesUnitFilter(Unit* u, int filter)
+{
+	// same classification as the unit lists in Java
+	Player* self = Broodwar->self();
+	Player* owner = u->getPlayer();
+	int relation;
+	if (self != NULL && owner == self) {
+		relation = unitFilterSelf;
+	} else if (self != NULL && self->isAlly(owner)) {
+		relation = unitFilterAllied;
+	} else if (self != NULL && self->isEnemy(owner)) {
+		relation = unitFilterEnemy;
+	} else {
+		relation = unitFilterNeutral;
+	}
+	if ((filter & relation) == 0) {
+		return false;
+	}
+
+	int layers = filter & (unitFilterAir | unitFilterGround);
+	if (layers != 0) {
+		int layer = (u->getType().isFlyer() || u->isLifted()) ? unitFilterAir : unitFilterGround;
+		if ((layers & layer) == 0) {
+			return false;
+		}
+	}
+	return true;
+}
+
+// Writes the IDs of the units which match the filter after a count, and returns the index after them
+int addUnitIdsToBuffer(const std::set<Unit*>& units, int filter, int index)
+{
+	int countIndex = index++;
+	int count = 0;
+	for (std::set<Unit*>::const_iterator i = units.begin(); i != units.end(); ++i) {
+		if (index >= bufferSize) {
+			break;
+		}
+		if (matchesUnitFilter(*i, filter)) {
+			intBuf[index++] = (*i)->getID();
+			count++;
+		}
+	}
+	intBuf[countIndex] = count;
+	return index;
+}
+
+/**
+* Writes the number of units within radius of the given map position which match the filter to the
+* data buffer, followed by their IDs. Returns the number of ints written.
+*/
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_findUnitsInRadius(JNIEnv* env, jobject jObj, jint x, jint y, jint radius, jint filter)
+{
+	return addUnitIdsToBuffer(Broodwar->getUnitsInRadius(BWAPI::Position(x, y), radius), filter, 0);
+}
+
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_findUnitsInRectangle(JNIEnv* env, jobject jObj, jint left, jint top, jint right, jint bottom, jint filter)
+{
+	return addUnitIdsToBuffer(Broodwar->getUnitsInRectangle(left, top, right, bottom), filter, 0);
+}
+
+/**
+* Answers a radius query for each of the numCenters (x, y) pairs in centers, writing a count followed by
+* IDs for each of them to the data buffer. Returns the number of ints written.
+*/
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_findUnitsInRadiusBatch(JNIEnv* env, jobject jObj, jintArray centers, jint numCenters, jint radius, jint filter)
+{
+	jint* coordinates = env->GetIntArrayElements(centers, NULL);
+	int index = 0;
+	for (int i = 0; i < numCenters; i++) {
+		BWAPI::Position center(coordinates[2 * i], coordinates[2 * i + 1]);
+		index = addUnitIdsToBuffer(Broodwar->getUnitsInRadius(center, radius), filter, index);
+	}
+	env->ReleaseIntArrayElements(centers, coordinates, JNI_ABORT);
+	return index;
+}
+
+/**
+* Answers a rectangle query for each of the numRectangles (left, top, right, bottom) quadruples in
+* rectangles, writing a count followed by IDs for each of them to the data buffer. Returns the number of
+* ints written.
+*/
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_findUnitsInRectangleBatch(JNIEnv* env, jobject jObj, jintArray rectangles, jint numRectangles, jint filter)
+{
+	jint* bounds = env->GetIntArrayElements(rectangles, NULL);
+	int index = 0;
+	for (int i = 0; i < numRectangles; i++) {
+		jint* r = bounds + 4 * i;
+		index = addUnitIdsToBuffer(Broodwar->getUnitsInRectangle(r[0], r[1], r[2], r[3]), filter, index);
+	}
+	env->ReleaseIntArrayElements(rectangles, bounds, JNI_ABORT);
+	return index;
+}
+
 /*****************************************************************************************************************/
 // Unit Commands
 /*****************************************************************************************************************/
@@ -1255,6 +1752,55 @@ JNIEXPORT jboolean JNICALL Java_jnibwapi_JNIBWAPI_issueCommand(JNIEnv * env, job
 	return JNI_FALSE;
 }
 
+/**
+* Executes the commands queued in the command buffer, writing back whether each succeeded and the
+* resulting error code. Returns the number of commands that succeeded. If none are queued, the header
+* is left alone so that the results of the last executed batch remain readable.
+*/
+int executeQueuedCommands(void)
+{
+	int numCommands = commandBuf[0];
+	if (numCommands == 0) {
+		return 0;
+	}
+	int numSucceeded = 0;
+	for (int i = 0; i < numCommands; i++) {
+		jint* command = commandBuf + commandHeaderSize + i * commandSize;
+		bool success = false;
+		int error = Errors::Unit_Does_Not_Exist.getID();
+		Unit* unit = Broodwar->getUnit(command[0]);
+		if (unit != NULL) {
+			UnitCommand c = BWAPI::UnitCommand();
+			c.unit = unit;
+			c.type = command[1];
+			c.target = Broodwar->getUnit(command[2]);
+			c.x = command[3];
+			c.y = command[4];
+			c.extra = command[5];
+			success = unit->issueCommand(c);
+			error = success ? Errors::None.getID() : Broodwar->getLastError().getID();
+		}
+		command[6] = success ? 1 : 0;
+		command[7] = error;
+		if (success) {
+			numSucceeded++;
+		}
+	}
+	commandBuf[0] = 0;
+	commandBuf[1] = numCommands;
+	return numSucceeded;
+}
+
+JNIEXPORT jobject JNICALL Java_jnibwapi_JNIBWAPI_getCommandBuffer(JNIEnv* env, jobject jObj)
+{
+	return env->NewDirectByteBuffer(commandBuf, (commandHeaderSize + maxCommands * commandSize) * sizeof(jint));
+}
+
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_executeCommands(JNIEnv* env, jobject jObj)
+{
+	return executeQueuedCommands();
+}
+
 JNIEXPORT jboolean JNICALL Java_jnibwapi_JNIBWAPI_attack__III(JNIEnv* env, jobject jObj, jint unitID, jint x, jint y)
 {
 	Unit* unit = Broodwar->getUnit(unitID);
@@ -1722,6 +2268,92 @@ JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_drawText(JNIEnv* env, jobject jObj
 	env->ReleaseStringUTFChars(msg, text);
 }
 
+// opcodes and flags of the draw lists passed to drawCommands, matching jnibwapi.DrawList
+const int drawBoxOp = 0;
+const int drawCircleOp = 1;
+const int drawLineOp = 2;
+const int drawDotOp = 3;
+const int drawTextOp = 4;
+const int drawFillFlag = 1;
+const int drawScreenFlag = 2;
+
+/**
+* Draws the draw lists recorded in Java. The command buffer holds, for each list, its number of ints
+* of commands and bytes of text, then its commands. Text offsets are relative to the list's text,
+* which follows the text of the previous list in the text buffer.
+*/
+JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_drawCommands(JNIEnv* env, jobject jObj, jobject commandBuffer, jobject textBuffer, jint numLists)
+{
+	const jint* commands = static_cast<jint*>(env->GetDirectBufferAddress(commandBuffer));
+	const char* text = static_cast<char*>(env->GetDirectBufferAddress(textBuffer));
+	int index = 0;
+	for (int list = 0; list < numLists; list++) {
+		int end = index + 2 + commands[index];
+		int textLength = commands[index + 1];
+		index += 2;
+		while (index < end) {
+			switch (commands[index++]) {
+			case drawBoxOp: {
+				const jint* c = commands + index;
+				if (c[5] & drawScreenFlag) {
+					Broodwar->drawBoxScreen(c[0], c[1], c[2], c[3], BWAPI::Color(c[4]), (c[5] & drawFillFlag) != 0);
+				} else {
+					Broodwar->drawBoxMap(c[0], c[1], c[2], c[3], BWAPI::Color(c[4]), (c[5] & drawFillFlag) != 0);
+				}
+				index += 6;
+				}
+				break;
+			case drawCircleOp: {
+				const jint* c = commands + index;
+				if (c[4] & drawScreenFlag) {
+					Broodwar->drawCircleScreen(c[0], c[1], c[2], BWAPI::Color(c[3]), (c[4] & drawFillFlag) != 0);
+				} else {
+					Broodwar->drawCircleMap(c[0], c[1], c[2], BWAPI::Color(c[3]), (c[4] & drawFillFlag) != 0);
+				}
+				index += 5;
+				}
+				break;
+			case drawLineOp: {
+				const jint* c = commands + index;
+				if (c[5] & drawScreenFlag) {
+					Broodwar->drawLineScreen(c[0], c[1], c[2], c[3], BWAPI::Color(c[4]));
+				} else {
+					Broodwar->drawLineMap(c[0], c[1], c[2], c[3], BWAPI::Color(c[4]));
+				}
+				index += 6;
+				}
+				break;
+			case drawDotOp: {
+				const jint* c = commands + index;
+				if (c[3] & drawScreenFlag) {
+					Broodwar->drawDotScreen(c[0], c[1], BWAPI::Color(c[2]));
+				} else {
+					Broodwar->drawDotMap(c[0], c[1], BWAPI::Color(c[2]));
+				}
+				index += 4;
+				}
+				break;
+			case drawTextOp: {
+				const jint* c = commands + index;
+				std::string msg(text + c[3], c[4]);
+				if (c[2] & drawScreenFlag) {
+					Broodwar->drawTextScreen(c[0], c[1], "%s", msg.c_str());
+				} else {
+					Broodwar->drawTextMap(c[0], c[1], "%s", msg.c_str());
+				}
+				index += 5;
+				}
+				break;
+			default:
+				// unknown opcode, the rest of the list cannot be decoded
+				index = end;
+				break;
+			}
+		}
+		text += textLength;
+	}
+}
+
 /**
 * Draws health boxes for units
 */
@@ -15,14 +15,6 @@ extern "C" {
 JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_startClient
   (JNIEnv *, jobject, jobject);
 
-/*
- * Class:     jnibwapi_JNIBWAPI
- * Method:    getFrame
- * Signature: ()I
- */
-JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_getFrame
-  (JNIEnv *, jobject);
-
 /*
  * Class:     jnibwapi_JNIBWAPI
  * Method:    getReplayFrameTotal
@@ -41,50 +33,58 @@ JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getPlayersData
 
 /*
  * Class:     jnibwapi_JNIBWAPI
- * Method:    getPlayerUpdate
- * Signature: (I)[I
+ * Method:    getDataBuffer
+ * Signature: ()Ljava/nio/ByteBuffer;
  */
-JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getPlayerUpdate
-  (JNIEnv *, jobject, jint);
+JNIEXPORT jobject JNICALL Java_jnibwapi_JNIBWAPI_getDataBuffer
+  (JNIEnv *, jobject);
 
 /*
  * Class:     jnibwapi_JNIBWAPI
- * Method:    getPlayerName
- * Signature: (I)[B
+ * Method:    subscribeUnitAttributes
+ * Signature: (I)V
  */
-JNIEXPORT jbyteArray JNICALL Java_jnibwapi_JNIBWAPI_getPlayerName
+JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_subscribeUnitAttributes
   (JNIEnv *, jobject, jint);
 
 /*
  * Class:     jnibwapi_JNIBWAPI
- * Method:    getResearchStatus
- * Signature: (I)[I
+ * Method:    getEventBuffer
+ * Signature: ()Ljava/nio/ByteBuffer;
  */
-JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getResearchStatus
-  (JNIEnv *, jobject, jint);
+JNIEXPORT jobject JNICALL Java_jnibwapi_JNIBWAPI_getEventBuffer
+  (JNIEnv *, jobject);
 
 /*
  * Class:     jnibwapi_JNIBWAPI
- * Method:    getUpgradeStatus
- * Signature: (I)[I
+ * Method:    getEventTextBuffer
+ * Signature: ()Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_jnibwapi_JNIBWAPI_getEventTextBuffer
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     jnibwapi_JNIBWAPI
+ * Method:    getPlayerName
+ * Signature: (I)[B
  */
-JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getUpgradeStatus
+JNIEXPORT jbyteArray JNICALL Java_jnibwapi_JNIBWAPI_getPlayerName
   (JNIEnv *, jobject, jint);
 
 /*
  * Class:     jnibwapi_JNIBWAPI
- * Method:    getAllUnitsData
- * Signature: ()[I
+ * Method:    getFrameSnapshot
+ * Signature: ()I
  */
-JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getAllUnitsData
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_getFrameSnapshot
   (JNIEnv *, jobject);
 
 /*
  * Class:     jnibwapi_JNIBWAPI
  * Method:    getStaticNeutralUnitsData
- * Signature: ()[I
+ * Signature: ()I
  */
-JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getStaticNeutralUnitsData
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_getStaticNeutralUnitsData
   (JNIEnv *, jobject);
 
 /*
@@ -279,6 +279,38 @@ JNIEXPORT jstring JNICALL Java_jnibwapi_JNIBWAPI_getOrderTypeName
 JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getUnitIdsOnTile
   (JNIEnv *, jobject, jint, jint);
 
+/*
+ * Class:     jnibwapi_JNIBWAPI
+ * Method:    findUnitsInRadius
+ * Signature: (IIII)I
+ */
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_findUnitsInRadius
+  (JNIEnv *, jobject, jint, jint, jint, jint);
+
+/*
+ * Class:     jnibwapi_JNIBWAPI
+ * Method:    findUnitsInRectangle
+ * Signature: (IIIII)I
+ */
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_findUnitsInRectangle
+  (JNIEnv *, jobject, jint, jint, jint, jint, jint);
+
+/*
+ * Class:     jnibwapi_JNIBWAPI
+ * Method:    findUnitsInRadiusBatch
+ * Signature: ([IIII)I
+ */
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_findUnitsInRadiusBatch
+  (JNIEnv *, jobject, jintArray, jint, jint, jint);
+
+/*
+ * Class:     jnibwapi_JNIBWAPI
+ * Method:    findUnitsInRectangleBatch
+ * Signature: ([III)I
+ */
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_findUnitsInRectangleBatch
+  (JNIEnv *, jobject, jintArray, jint, jint);
+
 /*
  * Class:     jnibwapi_JNIBWAPI
  * Method:    analyzeTerrain
@@ -391,6 +423,22 @@ JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getPolygon
 JNIEXPORT jintArray JNICALL Java_jnibwapi_JNIBWAPI_getBaseLocations
   (JNIEnv *, jobject);
 
+/*
+ * Class:     jnibwapi_JNIBWAPI
+ * Method:    getCommandBuffer
+ * Signature: ()Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_jnibwapi_JNIBWAPI_getCommandBuffer
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     jnibwapi_JNIBWAPI
+ * Method:    executeCommands
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_jnibwapi_JNIBWAPI_executeCommands
+  (JNIEnv *, jobject);
+
 /*
  * Class:     jnibwapi_JNIBWAPI
  * Method:    canIssueCommand
@@ -855,6 +903,14 @@ JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_drawDot
 JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_drawText
   (JNIEnv *, jobject, jint, jint, jstring, jboolean);
 
+/*
+ * Class:     jnibwapi_JNIBWAPI
+ * Method:    drawCommands
+ * Signature: (Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;I)V
+ */
+JNIEXPORT void JNICALL Java_jnibwapi_JNIBWAPI_drawCommands
+  (JNIEnv *, jobject, jobject, jobject, jint);
+
 /*
  * Class:     jnibwapi_JNIBWAPI
  * Method:    isVisible
@@ -0,0 +1,301 @@
+package jnibwapi;
+
+import java.util.Arrays;
+
+/**
+ * A* search over a grid of walkable tiles, using flat arrays instead of
+ * collections of Positions. Each thread has its own engine for build tile
+ * searches (see {@link #get()}) whose scratch arrays are reused between
+ * searches: entries are only valid if their generation stamp matches the
+ * current search, so nothing is cleared between searches. The open list is an
+ * indexed binary heap, so improving a tile's cost is a decrease-key rather than
+ * a scan. {@link JumpPointSearch} uses the open list and scratch arrays of a
+ * separate engine, sized for the walk tile grid.
+ *
+ * Tiles are indexed as x + width * y. Moves go to the 8 neighbours, costing
+ * {@link #COST} straight and {@link #COST_DIAG} diagonally; a diagonal move is
+ * only blocked if both tiles beside it are unwalkable. Ported from BWTA.
+ */
+final class AStarEngine {
+	/** Cost of a move to a horizontal or vertical neighbour */
+	static final int COST = 10;
+	/** Cost of a diagonal move, sqrt(10^2 + 10^2) ~= 14 */
+	static final int COST_DIAG = 14;
+
+	private static final ThreadLocal<AStarEngine> engines = new ThreadLocal<AStarEngine>() {
+		@Override
+		protected AStarEngine initialValue() {
+			return new AStarEngine();
+		}
+	};
+
+	/** Cost from the start, valid if stamp matches the generation */
+	private int[] g = new int[0];
+	/** g plus the heuristic, the heap's key */
+	private int[] f = new int[0];
+	private int[] parent = new int[0];
+	private int[] stamp = new int[0];
+	/** Position of each open tile in the heap, or -1 once it is closed */
+	private int[] heapIndex = new int[0];
+	private int[] heap = new int[0];
+	private int heapSize = 0;
+	private int generation = 0;
+
+	/**
+	 * Open list of {@link #fill(boolean[], int, int, int, int[])}: tiles by cost
+	 * modulo NUM_BUCKETS. Moves cost at most COST_DIAG, so the open tiles never
+	 * span more buckets than that.
+	 */
+	private static final int NUM_BUCKETS = COST_DIAG + 1;
+	private final int[][] buckets = new int[NUM_BUCKETS][64];
+	private final int[] bucketSizes = new int[NUM_BUCKETS];
+
+	AStarEngine() {
+	}
+
+	/** Returns the calling thread's engine for build tile searches */
+	static AStarEngine get() {
+		return engines.get();
+	}
+
+	/**
+	 * Returns the cost of the shortest path from start to end, in units of
+	 * {@link #COST} per tile, or -1 if end is not reachable. The start tile itself
+	 * does not need to be walkable.
+	 */
+	int search(boolean[] walkable, int width, int height, int start, int end) {
+		prepare(width * height);
+		int endX = end % width;
+		int endY = end / width;
+		open(start, 0, heuristic(start % width, start / width, endX, endY), -1);
+		while (this.heapSize > 0) {
+			int node = pop();
+			if (node == end) {
+				return this.g[node];
+			}
+			int gValue = this.g[node];
+			int bx = node % width;
+			int by = node / width;
+			int minx = Math.max(bx - 1, 0);
+			int maxx = Math.min(bx + 1, width - 1);
+			int miny = Math.max(by - 1, 0);
+			int maxy = Math.min(by + 1, height - 1);
+			for (int x = minx; x <= maxx; x++) {
+				for (int y = miny; y <= maxy; y++) {
+					int t = x + width * y;
+					if (!walkable[t]) {
+						continue;
+					}
+					boolean diagonal = (x != bx && y != by);
+					if (diagonal && !walkable[bx + width * y] && !walkable[x + width * by]) {
+						continue; // Not diagonally accessible
+					}
+					boolean seen = (this.stamp[t] == this.generation);
+					if (seen && this.heapIndex[t] < 0) {
+						continue; // closed
+					}
+					int newG = gValue + (diagonal ? COST_DIAG : COST);
+					int h = heuristic(x, y, endX, endY);
+					if (!seen) {
+						open(t, newG, newG + h, node);
+					} else if (newG < this.g[t]) {
+						improve(t, newG, newG + h, node);
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes the cost of the shortest path from start to every tile into costs, or
+	 * -1 for tiles which are not reachable, using the same moves as
+	 * {@link #search(boolean[], int, int, int, int)}. A Dijkstra search whose open
+	 * list is a ring of buckets by cost rather than the heap, as the costs of moves
+	 * are small integers. Tiles whose cost is lowered are added again, and skipped
+	 * when a bucket is reached if their cost no longer matches it.
+	 */
+	void fill(boolean[] walkable, int width, int height, int start, int[] costs) {
+		Arrays.fill(costs, 0, width * height, -1);
+		Arrays.fill(this.bucketSizes, 0);
+		costs[start] = 0;
+		addToBucket(start, 0);
+		int numOpen = 1;
+		for (int cost = 0; numOpen > 0; cost++) {
+			int bucket = cost % NUM_BUCKETS;
+			// moves cost more than 0 and less than NUM_BUCKETS, so this bucket does not grow while it is read
+			int[] nodes = this.buckets[bucket];
+			int size = this.bucketSizes[bucket];
+			for (int i = 0; i < size; i++) {
+				int node = nodes[i];
+				if (costs[node] != cost) {
+					continue;
+				}
+				int bx = node % width;
+				int by = node / width;
+				int minx = Math.max(bx - 1, 0);
+				int maxx = Math.min(bx + 1, width - 1);
+				int miny = Math.max(by - 1, 0);
+				int maxy = Math.min(by + 1, height - 1);
+				for (int x = minx; x <= maxx; x++) {
+					for (int y = miny; y <= maxy; y++) {
+						int t = x + width * y;
+						if (!walkable[t]) {
+							continue;
+						}
+						boolean diagonal = (x != bx && y != by);
+						if (diagonal && !walkable[bx + width * y] && !walkable[x + width * by]) {
+							continue; // Not diagonally accessible
+						}
+						int newCost = cost + (diagonal ? COST_DIAG : COST);
+						if (costs[t] < 0 || newCost < costs[t]) {
+							costs[t] = newCost;
+							addToBucket(t, newCost);
+							numOpen++;
+						}
+					}
+				}
+			}
+			numOpen -= size;
+			this.bucketSizes[bucket] = 0;
+		}
+	}
+
+	private void addToBucket(int node, int cost) {
+		int bucket = cost % NUM_BUCKETS;
+		int size = this.bucketSizes[bucket];
+		if (size == this.buckets[bucket].length) {
+			this.buckets[bucket] = Arrays.copyOf(this.buckets[bucket], size * 2);
+		}
+		this.buckets[bucket][size] = node;
+		this.bucketSizes[bucket] = size + 1;
+	}
+
+	/**
+	 * Returns the tile from which the given tile was reached in the last search on
+	 * this thread, or -1 for the start tile
+	 */
+	int getParent(int node) {
+		return this.parent[node];
+	}
+
+	/**
+	 * Octile distance: min(dx, dy) is the minimum diagonal distance, so costs
+	 * COST_DIAG, and abs(dx - dy) is the rest of the distance, so costs COST
+	 */
+	private static int heuristic(int x, int y, int endX, int endY) {
+		int dx = Math.abs(x - endX);
+		int dy = Math.abs(y - endY);
+		return Math.abs(dx - dy) * COST + Math.min(dx, dy) * COST_DIAG;
+	}
+
+	/** Grows the scratch arrays if needed and starts a new generation */
+	void prepare(int size) {
+		if (this.stamp.length < size) {
+			this.g = new int[size];
+			this.f = new int[size];
+			this.parent = new int[size];
+			this.stamp = new int[size];
+			this.heapIndex = new int[size];
+			this.heap = new int[size];
+			this.generation = 0;
+		}
+		this.generation++;
+		if (this.generation == Integer.MAX_VALUE) {
+			Arrays.fill(this.stamp, 0);
+			this.generation = 1;
+		}
+		this.heapSize = 0;
+	}
+
+	// open list and scores, shared with JumpPointSearch
+
+	/** Adds a tile not yet seen in this search to the open list */
+	void open(int node, int gValue, int fValue, int parentNode) {
+		this.stamp[node] = this.generation;
+		this.g[node] = gValue;
+		this.f[node] = fValue;
+		this.parent[node] = parentNode;
+		this.heap[this.heapSize] = node;
+		this.heapIndex[node] = this.heapSize;
+		siftUp(this.heapSize++);
+	}
+
+	/** Lowers the cost of an open tile, moving it up the open list */
+	void improve(int node, int gValue, int fValue, int parentNode) {
+		this.g[node] = gValue;
+		this.f[node] = fValue;
+		this.parent[node] = parentNode;
+		siftUp(this.heapIndex[node]);
+	}
+
+	boolean hasOpen() {
+		return this.heapSize > 0;
+	}
+
+	/** Returns true if the tile was opened in this search */
+	boolean isSeen(int node) {
+		return this.stamp[node] == this.generation;
+	}
+
+	/** Returns true if the tile was opened and then popped in this search */
+	boolean isClosed(int node) {
+		return this.stamp[node] == this.generation && this.heapIndex[node] < 0;
+	}
+
+	/** Cost from the start of a tile seen in this search */
+	int getCost(int node) {
+		return this.g[node];
+	}
+
+	/** Removes and returns the open tile with the lowest f, marking it closed */
+	int pop() {
+		int node = this.heap[0];
+		this.heapIndex[node] = -1;
+		int last = this.heap[--this.heapSize];
+		if (this.heapSize > 0) {
+			this.heap[0] = last;
+			this.heapIndex[last] = 0;
+			siftDown(0);
+		}
+		return node;
+	}
+
+	private void siftUp(int index) {
+		int node = this.heap[index];
+		int key = this.f[node];
+		while (index > 0) {
+			int parentIndex = (index - 1) >>> 1;
+			int parentNode = this.heap[parentIndex];
+			if (this.f[parentNode] <= key) {
+				break;
+			}
+			this.heap[index] = parentNode;
+			this.heapIndex[parentNode] = index;
+			index = parentIndex;
+		}
+		this.heap[index] = node;
+		this.heapIndex[node] = index;
+	}
+
+	private void siftDown(int index) {
+		int node = this.heap[index];
+		int key = this.f[node];
+		int half = this.heapSize >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			int right = child + 1;
+			if (right < this.heapSize && this.f[this.heap[right]] < this.f[this.heap[child]]) {
+				child = right;
+			}
+			if (key <= this.f[this.heap[child]]) {
+				break;
+			}
+			this.heap[index] = this.heap[child];
+			this.heapIndex[this.heap[index]] = index;
+			index = child;
+		}
+		this.heap[index] = node;
+		this.heapIndex[node] = index;
+	}
+}
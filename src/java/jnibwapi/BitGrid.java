@@ -0,0 +1,230 @@
+package jnibwapi;
+
+/**
+ * A grid of booleans packed into one long[] bitset per row, read with bounds
+ * checks so that tiles off the grid are false. Rows can be scanned 64 tiles at
+ * a time for the straight jumps of {@link JumpPointSearch}, and rectangles are
+ * tested and counted a word at a time for the terrain queries of {@link Map}.
+ */
+final class BitGrid {
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+	private final long[] bits;
+
+	BitGrid(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 63) >>> 6;
+		this.bits = new long[this.wordsPerRow * height];
+	}
+
+	/** Packs a grid stored as one int per tile, row by row, where 1 means set and 0 not */
+	static BitGrid fromInts(int[] values, int width, int height) {
+		BitGrid grid = new BitGrid(width, height);
+		for (int y = 0; y < height; y++) {
+			int row = y * grid.wordsPerRow;
+			int offset = y * width;
+			for (int w = 0; w < grid.wordsPerRow; w++) {
+				long word = 0;
+				int end = Math.min((w + 1) << 6, width);
+				for (int x = w << 6; x < end; x++) {
+					word |= (long) (values[offset + x] & 1) << x;
+				}
+				grid.bits[row + w] = word;
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * Returns a grid with one tile for each block of scale x scale tiles of this
+	 * one, set only if every tile of the block is set. The scale must be a power
+	 * of two no greater than 64, so that blocks do not straddle words.
+	 */
+	BitGrid shrink(int scale) {
+		BitGrid shrunk = new BitGrid(this.width / scale, this.height / scale);
+		long blockMask = (scale == 64) ? -1L : (1L << scale) - 1;
+		long[] rows = new long[this.wordsPerRow];
+		for (int y = 0; y < shrunk.height; y++) {
+			// AND the rows of the blocks together, then check each block's bits in one word
+			System.arraycopy(this.bits, y * scale * this.wordsPerRow, rows, 0, this.wordsPerRow);
+			for (int i = 1; i < scale; i++) {
+				int offset = (y * scale + i) * this.wordsPerRow;
+				for (int w = 0; w < this.wordsPerRow; w++) {
+					rows[w] &= this.bits[offset + w];
+				}
+			}
+			for (int x = 0; x < shrunk.width; x++) {
+				int first = x * scale;
+				if (((rows[first >>> 6] >>> (first & 63)) & blockMask) == blockMask) {
+					shrunk.bits[y * shrunk.wordsPerRow + (x >>> 6)] |= 1L << x;
+				}
+			}
+		}
+		return shrunk;
+	}
+
+	/** Copies the grid into a boolean[] with one entry per tile, row by row */
+	boolean[] toBooleans() {
+		boolean[] values = new boolean[this.width * this.height];
+		for (int y = 0; y < this.height; y++) {
+			for (int x = 0; x < this.width; x++) {
+				values[x + this.width * y] = (this.bits[y * this.wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+			}
+		}
+		return values;
+	}
+
+	int getWidth() {
+		return this.width;
+	}
+
+	int getHeight() {
+		return this.height;
+	}
+
+	boolean get(int x, int y) {
+		if (x < 0 || y < 0 || x >= this.width || y >= this.height) {
+			return false;
+		}
+		return (this.bits[y * this.wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/** Returns a grid with the rows and columns swapped, so that columns can be scanned as rows */
+	BitGrid transpose() {
+		BitGrid transposed = new BitGrid(this.height, this.width);
+		for (int y = 0; y < this.height; y++) {
+			for (int w = 0; w < this.wordsPerRow; w++) {
+				for (long word = this.bits[y * this.wordsPerRow + w]; word != 0; word &= word - 1) {
+					int x = (w << 6) + Long.numberOfTrailingZeros(word);
+					transposed.bits[x * transposed.wordsPerRow + (y >>> 6)] |= 1L << y;
+				}
+			}
+		}
+		return transposed;
+	}
+
+	/**
+	 * Returns the first tile at or right of x in row y which is either not set,
+	 * or set with a set tile above or below it whose left neighbour is not set
+	 * (where a jump moving right must stop). Returns width if the row ends first.
+	 */
+	int scanRight(int x, int y) {
+		int first = x >>> 6;
+		for (int w = first;; w++) {
+			long up = word(y - 1, w);
+			long down = word(y + 1, w);
+			long stops = ~word(y, w) | (up & ~((up << 1) | (word(y - 1, w - 1) >>> 63)))
+					| (down & ~((down << 1) | (word(y + 1, w - 1) >>> 63)));
+			if (w == first) {
+				stops &= -1L << (x & 63);
+			}
+			if (stops != 0) {
+				return Math.min((w << 6) + Long.numberOfTrailingZeros(stops), this.width);
+			}
+		}
+	}
+
+	/**
+	 * As {@link #scanRight(int, int)}, moving left: returns the first tile at or
+	 * left of x where a jump moving left must stop, or -1 if the row ends first.
+	 */
+	int scanLeft(int x, int y) {
+		int first = x >>> 6;
+		for (int w = first; w >= 0; w--) {
+			long up = word(y - 1, w);
+			long down = word(y + 1, w);
+			long stops = ~word(y, w) | (up & ~((up >>> 1) | (word(y - 1, w + 1) << 63)))
+					| (down & ~((down >>> 1) | (word(y + 1, w + 1) << 63)));
+			if (w == first && (x & 63) != 63) {
+				stops &= (1L << ((x & 63) + 1)) - 1;
+			}
+			if (stops != 0) {
+				return (w << 6) + 63 - Long.numberOfLeadingZeros(stops);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns true if every tile of the width x height rectangle with its top left
+	 * corner at (x, y) is set, or false if any is not or the rectangle leaves the
+	 * grid
+	 */
+	boolean isSet(int x, int y, int width, int height) {
+		if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > this.width || y + height > this.height) {
+			return false;
+		}
+		int firstWord = x >>> 6;
+		int lastWord = (x + width - 1) >>> 6;
+		for (int row = y; row < y + height; row++) {
+			int offset = row * this.wordsPerRow;
+			for (int w = firstWord; w <= lastWord; w++) {
+				long mask = rangeMask(w, x, x + width);
+				if ((this.bits[offset + w] & mask) != mask) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of set tiles in the width x height rectangle with its top
+	 * left corner at (x, y), ignoring the part of it off the grid
+	 */
+	int count(int x, int y, int width, int height) {
+		int left = Math.max(x, 0);
+		int right = Math.min(x + width, this.width);
+		int top = Math.max(y, 0);
+		int bottom = Math.min(y + height, this.height);
+		if (left >= right || top >= bottom) {
+			return 0;
+		}
+		int count = 0;
+		for (int row = top; row < bottom; row++) {
+			int offset = row * this.wordsPerRow;
+			for (int w = left >>> 6; w <= (right - 1) >>> 6; w++) {
+				count += Long.bitCount(this.bits[offset + w] & rangeMask(w, left, right));
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the first tile at or right of x in row y which is not set, or width
+	 * if the rest of the row is set. Returns x if (x, y) is off the grid.
+	 */
+	int nextClear(int x, int y) {
+		if (x < 0 || y < 0 || x >= this.width || y >= this.height) {
+			return x;
+		}
+		int offset = y * this.wordsPerRow;
+		for (int w = x >>> 6; w < this.wordsPerRow; w++) {
+			long clear = ~this.bits[offset + w];
+			if (w == x >>> 6) {
+				clear &= -1L << (x & 63);
+			}
+			if (clear != 0) {
+				return Math.min((w << 6) + Long.numberOfTrailingZeros(clear), this.width);
+			}
+		}
+		return this.width;
+	}
+
+	/** Returns the bits of word w covering tiles from (inclusive) to to (exclusive) */
+	private static long rangeMask(int w, int from, int to) {
+		int low = Math.max(from - (w << 6), 0);
+		int high = Math.min(to - (w << 6), 64);
+		return (high == 64 ? -1L : (1L << high) - 1) & (-1L << low);
+	}
+
+	/** Returns a word of a row's bitset, or 0 off the grid */
+	private long word(int y, int w) {
+		if (y < 0 || y >= this.height || w < 0 || w >= this.wordsPerRow) {
+			return 0;
+		}
+		return this.bits[y * this.wordsPerRow + w];
+	}
+}
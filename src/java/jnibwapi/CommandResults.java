@@ -0,0 +1,109 @@
+package jnibwapi;
+
+import java.nio.IntBuffer;
+
+import jnibwapi.types.UnitCommandType;
+import jnibwapi.types.UnitCommandType.UnitCommandTypes;
+import jnibwapi.util.ErrorCode;
+
+/**
+ * Cursor over the results of the last batch of commands executed from the
+ * command buffer (see {@link JNIBWAPI#queueCommand(UnitCommand)}). The results
+ * are copied out of the bridge's buffer when the batch is executed, so commands
+ * can be queued while reading them, for example to retry the failed ones.
+ *
+ * <pre>
+ * CommandResults results = bwapi.getCommandResults();
+ * while (results.next()) {
+ * 	if (!results.isSuccess()) {
+ * 		...
+ * 	}
+ * }
+ * </pre>
+ */
+public class CommandResults {
+	private int[] results = new int[64 * JNIBWAPI.commandSize];
+	private int count = 0;
+	private int current = -1;
+
+	CommandResults() {
+	}
+
+	/** Copies the results of the batch just executed from the command buffer */
+	void copy(IntBuffer commandBuffer) {
+		int count = commandBuffer.get(JNIBWAPI.commandResultCountIndex);
+		int length = count * JNIBWAPI.commandSize;
+		if (length > this.results.length) {
+			this.results = new int[Math.max(length, this.results.length * 2)];
+		}
+		commandBuffer.position(JNIBWAPI.commandHeaderSize);
+		commandBuffer.get(this.results, 0, length);
+		commandBuffer.position(0);
+		this.count = count;
+		this.current = -1;
+	}
+
+	/** Moves the cursor to the start of the last executed batch */
+	void reset() {
+		this.current = -1;
+	}
+
+	/** Number of commands in the last executed batch */
+	public int size() {
+		return this.count;
+	}
+
+	/** Advances to the next command, returning false when there are none left */
+	public boolean next() {
+		if (this.current + 1 >= this.count) {
+			return false;
+		}
+		this.current++;
+		return true;
+	}
+
+	/** Position of the current command in its batch, in the order it was queued */
+	public int getIndex() {
+		return this.current;
+	}
+
+	public int getUnitID() {
+		return get(0);
+	}
+
+	public UnitCommandType getCommandType() {
+		return UnitCommandTypes.getUnitCommandType(get(1));
+	}
+
+	public int getTargetUnitID() {
+		return get(2);
+	}
+
+	public int getX() {
+		return get(3);
+	}
+
+	public int getY() {
+		return get(4);
+	}
+
+	public int getExtra() {
+		return get(5);
+	}
+
+	public boolean isSuccess() {
+		return get(6) == 1;
+	}
+
+	/** Error code defined in {@link ErrorCode}, NONE if the command succeeded */
+	public int getErrorCode() {
+		return get(7);
+	}
+
+	private int get(int field) {
+		if (this.current < 0 || this.current >= this.count) {
+			throw new IllegalStateException("Cursor is not on a command");
+		}
+		return this.results[this.current * JNIBWAPI.commandSize + field];
+	}
+}
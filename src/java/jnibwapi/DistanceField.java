@@ -0,0 +1,63 @@
+package jnibwapi;
+
+import jnibwapi.Position.PosType;
+
+/**
+ * Ground distances from one landmark (a base location or choke point) to every
+ * build tile of the map, precomputed over the same walkability grid and moves as
+ * {@link Map#getGroundDistance(Position, Position)}, so that looking up a
+ * distance is a single array read. See {@link Map#getDistanceField(BaseLocation)}.
+ */
+public class DistanceField {
+	private final int originX;
+	private final int originY;
+	private final int width;
+	private final int height;
+	/** Path cost from the origin to each build tile, or -1 if unreachable */
+	private final int[] costs;
+
+	DistanceField(int originX, int originY, int width, int height, int[] costs) {
+		this.originX = originX;
+		this.originY = originY;
+		this.width = width;
+		this.height = height;
+		this.costs = costs;
+	}
+
+	/** The build tile the distances are measured from */
+	public Position getOrigin() {
+		return new Position(this.originX, this.originY, PosType.BUILD);
+	}
+
+	int getOriginX() {
+		return this.originX;
+	}
+
+	int getOriginY() {
+		return this.originY;
+	}
+
+	int[] getCosts() {
+		return this.costs;
+	}
+
+	/**
+	 * Returns the ground distance, in pixels, from the origin to the build tile of
+	 * the given position, or -1 if it is not reachable
+	 */
+	public double getGroundDistance(Position p) {
+		if (p.getPX() < 0 || p.getPY() < 0) {
+			return -1;
+		}
+		return getGroundDistance(p.getBX(), p.getBY());
+	}
+
+	/** Primitive overload of {@link #getGroundDistance(Position)} for a build tile */
+	public double getGroundDistance(int bx, int by) {
+		if (bx < 0 || by < 0 || bx >= this.width || by >= this.height) {
+			return -1;
+		}
+		int cost = this.costs[bx + this.width * by];
+		return (cost < 0) ? -1 : cost * Map.TILE_SIZE / (double) AStarEngine.COST;
+	}
+}
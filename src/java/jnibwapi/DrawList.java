@@ -0,0 +1,160 @@
+package jnibwapi;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import jnibwapi.util.BWColor;
+
+/**
+ * A list of shapes and text to be drawn, recorded in Java and passed to the
+ * bridge in a single call. Obtain the list for the current frame from
+ * {@link JNIBWAPI#getDrawList()}, which is cleared after each frame, or a
+ * persistent layer from {@link JNIBWAPI#createDrawLayer()}, which is drawn every
+ * frame until it is cleared or removed.
+ *
+ * Coordinates are in pixels. If screenCoords is false, they are map positions,
+ * otherwise screen positions.
+ */
+public class DrawList {
+	// opcodes, followed by the operands listed, matching the bridge's drawCommands
+	static final int BOX = 0; // left, top, right, bottom, color, flags
+	static final int CIRCLE = 1; // x, y, radius, color, flags
+	static final int LINE = 2; // x1, y1, x2, y2, color, flags
+	static final int DOT = 3; // x, y, color, flags
+	static final int TEXT = 4; // x, y, flags, text offset, text length
+	static final int FILL = 1;
+	static final int SCREEN = 2;
+
+	private final Charset charset;
+	private int[] commands = new int[256];
+	private int length = 0;
+	private byte[] text = new byte[256];
+	private int textLength = 0;
+
+	DrawList(Charset charset) {
+		this.charset = charset;
+	}
+
+	public void drawBox(int left, int top, int right, int bottom, BWColor bWColor, boolean fill,
+			boolean screenCoords) {
+		int index = reserve(7);
+		this.commands[index++] = BOX;
+		this.commands[index++] = left;
+		this.commands[index++] = top;
+		this.commands[index++] = right;
+		this.commands[index++] = bottom;
+		this.commands[index++] = bWColor.getID();
+		this.commands[index++] = flags(fill, screenCoords);
+	}
+
+	public void drawBox(Position topLeft, Position bottomRight, BWColor bWColor, boolean fill, boolean screenCoords) {
+		drawBox(topLeft.getPX(), topLeft.getPY(), bottomRight.getPX(), bottomRight.getPY(), bWColor, fill,
+				screenCoords);
+	}
+
+	public void drawCircle(int x, int y, int radius, BWColor bWColor, boolean fill, boolean screenCoords) {
+		int index = reserve(6);
+		this.commands[index++] = CIRCLE;
+		this.commands[index++] = x;
+		this.commands[index++] = y;
+		this.commands[index++] = radius;
+		this.commands[index++] = bWColor.getID();
+		this.commands[index++] = flags(fill, screenCoords);
+	}
+
+	public void drawCircle(Position p, int radius, BWColor bWColor, boolean fill, boolean screenCoords) {
+		drawCircle(p.getPX(), p.getPY(), radius, bWColor, fill, screenCoords);
+	}
+
+	public void drawLine(int x1, int y1, int x2, int y2, BWColor bWColor, boolean screenCoords) {
+		int index = reserve(7);
+		this.commands[index++] = LINE;
+		this.commands[index++] = x1;
+		this.commands[index++] = y1;
+		this.commands[index++] = x2;
+		this.commands[index++] = y2;
+		this.commands[index++] = bWColor.getID();
+		this.commands[index++] = flags(false, screenCoords);
+	}
+
+	public void drawLine(Position start, Position end, BWColor bWColor, boolean screenCoords) {
+		drawLine(start.getPX(), start.getPY(), end.getPX(), end.getPY(), bWColor, screenCoords);
+	}
+
+	public void drawDot(int x, int y, BWColor bWColor, boolean screenCoords) {
+		int index = reserve(5);
+		this.commands[index++] = DOT;
+		this.commands[index++] = x;
+		this.commands[index++] = y;
+		this.commands[index++] = bWColor.getID();
+		this.commands[index++] = flags(false, screenCoords);
+	}
+
+	public void drawDot(Position p, BWColor bWColor, boolean screenCoords) {
+		drawDot(p.getPX(), p.getPY(), bWColor, screenCoords);
+	}
+
+	public void drawText(int x, int y, String msg, boolean screenCoords) {
+		byte[] bytes = msg.getBytes(this.charset);
+		if (this.textLength + bytes.length > this.text.length) {
+			this.text = Arrays.copyOf(this.text, Math.max(this.text.length * 2, this.textLength + bytes.length));
+		}
+		System.arraycopy(bytes, 0, this.text, this.textLength, bytes.length);
+
+		int index = reserve(6);
+		this.commands[index++] = TEXT;
+		this.commands[index++] = x;
+		this.commands[index++] = y;
+		this.commands[index++] = flags(false, screenCoords);
+		this.commands[index++] = this.textLength;
+		this.commands[index++] = bytes.length;
+		this.textLength += bytes.length;
+	}
+
+	public void drawText(Position a, String msg, boolean screenCoords) {
+		drawText(a.getPX(), a.getPY(), msg, screenCoords);
+	}
+
+	/** Removes everything recorded so far, keeping the allocated storage */
+	public void clear() {
+		this.length = 0;
+		this.textLength = 0;
+	}
+
+	public boolean isEmpty() {
+		return this.length == 0;
+	}
+
+	/** Number of ints of recorded commands */
+	int getLength() {
+		return this.length;
+	}
+
+	/** Number of bytes of recorded text */
+	int getTextLength() {
+		return this.textLength;
+	}
+
+	/** Copies the recorded commands and text to the given positions of the buffers */
+	void writeTo(IntBuffer commandBuffer, int index, ByteBuffer textBuffer, int textIndex) {
+		commandBuffer.position(index);
+		commandBuffer.put(this.commands, 0, this.length);
+		textBuffer.position(textIndex);
+		textBuffer.put(this.text, 0, this.textLength);
+	}
+
+	private int reserve(int size) {
+		int index = this.length;
+		if (index + size > this.commands.length) {
+			this.commands = Arrays.copyOf(this.commands, this.commands.length * 2);
+		}
+		this.length += size;
+		return index;
+	}
+
+	private static int flags(boolean fill, boolean screenCoords) {
+		return (fill ? FILL : 0) | (screenCoords ? SCREEN : 0);
+	}
+}
@@ -0,0 +1,262 @@
+package jnibwapi;
+
+import java.util.Arrays;
+
+import jnibwapi.types.UnitType;
+import jnibwapi.types.UnitType.UnitTypes;
+
+/**
+ * The last known state of enemy units which are no longer accessible, usually
+ * because they went into the fog of war. Obtain it from
+ * {@link JNIBWAPI#getEnemyMemory()}.
+ *
+ * A unit is remembered when it disappears from the enemy units without a
+ * UnitDestroy event, and forgotten when it becomes accessible again, is
+ * destroyed, or has not been seen for longer than the expiry. The state is kept
+ * in primitive arrays, with a coarse grid over the map for spatial lookups.
+ *
+ * Attributes in unsubscribed groups (see
+ * {@link JNIBWAPI#setUnitAttributeGroups(int)}) are remembered as zero.
+ */
+public class EnemyMemory {
+	/** Expiry for units which are remembered until seen again or destroyed */
+	public static final int NEVER = Integer.MAX_VALUE;
+
+	// spatial grid over the largest map size, 256x256 build tiles
+	private static final int cellShift = 8; // 256 pixels
+	private static final int gridSize = (256 * 32) >> cellShift;
+
+	private int expiry = NEVER;
+
+	// remembered units, packed
+	private int size = 0;
+	private int[] unitIDs = new int[64];
+	private int[] playerIDs = new int[64];
+	private int[] typeIDs = new int[64];
+	private int[] xs = new int[64];
+	private int[] ys = new int[64];
+	private int[] hitPoints = new int[64];
+	private int[] shields = new int[64];
+	private int[] lastSeenFrames = new int[64];
+	/** Next unit in the same grid cell, or -1 */
+	private int[] nextInCell = new int[64];
+	/** First unit of each grid cell, or -1 */
+	private final int[] cellHeads = new int[gridSize * gridSize];
+	/** Index in the packed arrays plus one, indexed by unit ID; 0 if not remembered */
+	private int[] indexOfUnit = new int[256];
+
+	EnemyMemory() {
+		Arrays.fill(this.cellHeads, -1);
+	}
+
+	/**
+	 * Sets the number of frames after which a unit that has not been seen is
+	 * forgotten, or {@link #NEVER}.
+	 */
+	public void setExpiry(int frames) {
+		this.expiry = frames;
+	}
+
+	public int getExpiry() {
+		return this.expiry;
+	}
+
+	/** Number of units remembered */
+	public int size() {
+		return this.size;
+	}
+
+	/** ID of the index'th remembered unit, for iterating over all of them */
+	public int getUnitID(int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.size);
+		}
+		return this.unitIDs[index];
+	}
+
+	public boolean isRemembered(int unitID) {
+		return unitID >= 0 && unitID < this.indexOfUnit.length && this.indexOfUnit[unitID] != 0;
+	}
+
+	public int getPlayerID(int unitID) {
+		return this.playerIDs[index(unitID)];
+	}
+
+	public UnitType getType(int unitID) {
+		return UnitTypes.getUnitType(this.typeIDs[index(unitID)]);
+	}
+
+	public int getTypeID(int unitID) {
+		return this.typeIDs[index(unitID)];
+	}
+
+	public Position getPosition(int unitID) {
+		int index = index(unitID);
+		return new Position(this.xs[index], this.ys[index]);
+	}
+
+	public int getX(int unitID) {
+		return this.xs[index(unitID)];
+	}
+
+	public int getY(int unitID) {
+		return this.ys[index(unitID)];
+	}
+
+	public int getHitPoints(int unitID) {
+		return this.hitPoints[index(unitID)];
+	}
+
+	public int getShields(int unitID) {
+		return this.shields[index(unitID)];
+	}
+
+	/** Frame in which the unit stopped being accessible */
+	public int getLastSeenFrame(int unitID) {
+		return this.lastSeenFrames[index(unitID)];
+	}
+
+	/**
+	 * Writes the IDs of the remembered units last seen within radius pixels of
+	 * (x, y) into ids, which can be reused between queries. Returns the number of
+	 * matching units; if it is larger than ids.length, only the first ids.length
+	 * IDs are written.
+	 */
+	public int getUnitIDsInRadius(int x, int y, int radius, int[] ids) {
+		int count = 0;
+		long radiusSquared = (long) radius * radius;
+		int minCellX = cell(x - radius), maxCellX = cell(x + radius);
+		int minCellY = cell(y - radius), maxCellY = cell(y + radius);
+		for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+			for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+				for (int i = this.cellHeads[cellY * gridSize + cellX]; i >= 0; i = this.nextInCell[i]) {
+					long dx = this.xs[i] - x;
+					long dy = this.ys[i] - y;
+					if (dx * dx + dy * dy <= radiusSquared) {
+						if (count < ids.length) {
+							ids[count] = this.unitIDs[i];
+						}
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	public int getUnitIDsInRadius(Position center, int radius, int[] ids) {
+		return getUnitIDsInRadius(center.getPX(), center.getPY(), radius, ids);
+	}
+
+	/** Forgets all units, for the start of a game */
+	void clear() {
+		Arrays.fill(this.indexOfUnit, 0);
+		Arrays.fill(this.cellHeads, -1);
+		this.size = 0;
+	}
+
+	/** Remembers the last state of an enemy unit which is no longer accessible */
+	void remember(Unit unit, int frame, int groups) {
+		int unitID = unit.getID();
+		forget(unitID);
+		if (unitID >= this.indexOfUnit.length) {
+			this.indexOfUnit = Arrays.copyOf(this.indexOfUnit, Math.max(this.indexOfUnit.length * 2, unitID + 1));
+		}
+		if (this.size == this.unitIDs.length) {
+			int capacity = this.size * 2;
+			this.unitIDs = Arrays.copyOf(this.unitIDs, capacity);
+			this.playerIDs = Arrays.copyOf(this.playerIDs, capacity);
+			this.typeIDs = Arrays.copyOf(this.typeIDs, capacity);
+			this.xs = Arrays.copyOf(this.xs, capacity);
+			this.ys = Arrays.copyOf(this.ys, capacity);
+			this.hitPoints = Arrays.copyOf(this.hitPoints, capacity);
+			this.shields = Arrays.copyOf(this.shields, capacity);
+			this.lastSeenFrames = Arrays.copyOf(this.lastSeenFrames, capacity);
+			this.nextInCell = Arrays.copyOf(this.nextInCell, capacity);
+		}
+		boolean position = (groups & Unit.GROUP_POSITION) != 0;
+		boolean combat = (groups & Unit.GROUP_COMBAT) != 0;
+		int index = this.size++;
+		this.unitIDs[index] = unitID;
+		this.playerIDs[index] = unit.getPlayerID();
+		this.typeIDs[index] = unit.getTypeID();
+		this.xs[index] = position ? unit.getX() : 0;
+		this.ys[index] = position ? unit.getY() : 0;
+		this.hitPoints[index] = combat ? unit.getHitPoints() : 0;
+		this.shields[index] = combat ? unit.getShields() : 0;
+		this.lastSeenFrames[index] = frame;
+		this.indexOfUnit[unitID] = index + 1;
+		int cell = cellOf(index);
+		this.nextInCell[index] = this.cellHeads[cell];
+		this.cellHeads[cell] = index;
+	}
+
+	/** Forgets a unit, if it is remembered */
+	void forget(int unitID) {
+		if (!isRemembered(unitID)) {
+			return;
+		}
+		int index = this.indexOfUnit[unitID] - 1;
+		unlink(index);
+		this.indexOfUnit[unitID] = 0;
+		// move the last unit into the freed index
+		int last = --this.size;
+		if (index != last) {
+			unlink(last);
+			this.unitIDs[index] = this.unitIDs[last];
+			this.playerIDs[index] = this.playerIDs[last];
+			this.typeIDs[index] = this.typeIDs[last];
+			this.xs[index] = this.xs[last];
+			this.ys[index] = this.ys[last];
+			this.hitPoints[index] = this.hitPoints[last];
+			this.shields[index] = this.shields[last];
+			this.lastSeenFrames[index] = this.lastSeenFrames[last];
+			this.indexOfUnit[this.unitIDs[index]] = index + 1;
+			int cell = cellOf(index);
+			this.nextInCell[index] = this.cellHeads[cell];
+			this.cellHeads[cell] = index;
+		}
+	}
+
+	/** Forgets the units not seen for longer than the expiry */
+	void expire(int frame) {
+		if (this.expiry == NEVER) {
+			return;
+		}
+		for (int i = this.size - 1; i >= 0; i--) {
+			if (frame - this.lastSeenFrames[i] > this.expiry) {
+				forget(this.unitIDs[i]);
+			}
+		}
+	}
+
+	private int index(int unitID) {
+		if (!isRemembered(unitID)) {
+			throw new IllegalArgumentException("Unit " + unitID + " is not remembered");
+		}
+		return this.indexOfUnit[unitID] - 1;
+	}
+
+	/** Removes the unit at index from its grid cell's list */
+	private void unlink(int index) {
+		int cell = cellOf(index);
+		if (this.cellHeads[cell] == index) {
+			this.cellHeads[cell] = this.nextInCell[index];
+			return;
+		}
+		for (int i = this.cellHeads[cell]; i >= 0; i = this.nextInCell[i]) {
+			if (this.nextInCell[i] == index) {
+				this.nextInCell[i] = this.nextInCell[index];
+				return;
+			}
+		}
+	}
+
+	private int cellOf(int index) {
+		return cell(this.ys[index]) * gridSize + cell(this.xs[index]);
+	}
+
+	private static int cell(int coordinate) {
+		return Math.max(0, Math.min(gridSize - 1, coordinate >> cellShift));
+	}
+}
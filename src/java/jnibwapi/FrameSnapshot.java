@@ -0,0 +1,72 @@
+package jnibwapi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the units and players in one frame, published by
+ * JNIBWAPI when snapshots are enabled (see
+ * {@link JNIBWAPI#setSnapshotsEnabled(boolean)}). Unlike {@link Unit} and
+ * {@link Player}, which are updated in place on the callback thread, a snapshot
+ * can be read from any thread while the following frames are applied.
+ *
+ * Snapshots share structure: units are stored in fixed-size chunks, and a chunk
+ * is only copied when a unit in it changed, so consecutive snapshots share the
+ * chunks and unit records that did not change.
+ */
+public class FrameSnapshot {
+	static final int chunkShift = 6;
+	static final int chunkSize = 1 << chunkShift;
+
+	private final int frame;
+	private final UnitSnapshot[][] chunks;
+	private final int unitCount;
+	private final PlayerSnapshot[] players;
+
+	FrameSnapshot(int frame, UnitSnapshot[][] chunks, int unitCount, PlayerSnapshot[] players) {
+		this.frame = frame;
+		this.chunks = chunks;
+		this.unitCount = unitCount;
+		this.players = players;
+	}
+
+	public int getFrame() {
+		return this.frame;
+	}
+
+	/** Returns the unit with the given ID, or null if it did not exist in this frame */
+	public UnitSnapshot getUnit(int unitID) {
+		int chunk = unitID >>> chunkShift;
+		if (chunk >= this.chunks.length || this.chunks[chunk] == null) {
+			return null;
+		}
+		return this.chunks[chunk][unitID & (chunkSize - 1)];
+	}
+
+	public int getUnitCount() {
+		return this.unitCount;
+	}
+
+	/** Returns a new list of all units in this frame, in order of ID */
+	public List<UnitSnapshot> getUnits() {
+		List<UnitSnapshot> units = new ArrayList<>(this.unitCount);
+		for (UnitSnapshot[] chunk : this.chunks) {
+			if (chunk != null) {
+				for (UnitSnapshot unit : chunk) {
+					if (unit != null) {
+						units.add(unit);
+					}
+				}
+			}
+		}
+		return units;
+	}
+
+	/**
+	 * Returns the player with the given ID, or null if the player was not updated
+	 * (the bridge only sends self, or every player in replays)
+	 */
+	public PlayerSnapshot getPlayer(int playerID) {
+		return (playerID >= 0 && playerID < this.players.length) ? this.players[playerID] : null;
+	}
+}
@@ -0,0 +1,204 @@
+package jnibwapi;
+
+import java.lang.ref.WeakReference;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Builds the {@link FrameSnapshot}s published by JNIBWAPI from the same unit
+ * delta as the live units, in the same pass. Chunks of the current state are
+ * copied on the first write after a snapshot was published, so that published
+ * snapshots are never modified and unchanged chunks are shared.
+ *
+ * Unit records replaced by a later frame are reused once no published snapshot
+ * that contains them can still be read, which is tracked with weak references
+ * to the published snapshots.
+ */
+class FrameSnapshotBuilder {
+	private UnitSnapshot[][] chunks = new UnitSnapshot[0][];
+	/** Build version in which each chunk was copied, so it may be written in place */
+	private int[] chunkVersions = new int[0];
+	private int version = 1;
+	private int unitCount = 0;
+	private PlayerSnapshot[] players = new PlayerSnapshot[0];
+
+	/** Published snapshots which have not been collected yet, oldest first */
+	private final ArrayList<Published> published = new ArrayList<>();
+	/** Replaced unit records which may still be in a published snapshot */
+	private final ArrayList<UnitSnapshot> retired = new ArrayList<>();
+	/** Unit records which are in no snapshot, to be reused */
+	private final ArrayList<UnitSnapshot> free = new ArrayList<>();
+
+	private static class Published extends WeakReference<FrameSnapshot> {
+		final int version;
+
+		Published(FrameSnapshot snapshot, int version) {
+			super(snapshot);
+			this.version = version;
+		}
+	}
+
+	/** Removes the unit with the given ID, if it is in the current state */
+	void unitRemoved(int id) {
+		if (get(id) != null) {
+			set(id, null);
+			this.unitCount--;
+		}
+	}
+
+	/**
+	 * Adds a unit from its record at index of the data buffer: the unit ID
+	 * followed by the given attributes (see {@link Unit#updateColumns(IntBuffer, int, int[])}).
+	 */
+	void unitAdded(IntBuffer data, int index, int[] columns) {
+		UnitSnapshot unit = allocate();
+		int[] record = unit.getRecord();
+		Arrays.fill(record, 0);
+		int id = data.get(index++);
+		record[Unit.ATTR_ID] = id;
+		for (int attribute : columns) {
+			record[attribute] = data.get(index++);
+		}
+		if (get(id) == null) {
+			this.unitCount++;
+		}
+		set(id, unit);
+	}
+
+	/**
+	 * Applies the changed attributes of a unit from its entry at index of the data
+	 * buffer (see {@link Unit#updateDelta(IntBuffer, int)}).
+	 */
+	void unitChanged(IntBuffer data, int index) {
+		int id = data.get(index++);
+		UnitSnapshot previous = get(id);
+		if (previous == null) {
+			throw new IllegalStateException("Unit delta changes unit " + id + " which is not in the snapshot");
+		}
+		UnitSnapshot unit = allocate();
+		int[] record = unit.getRecord();
+		System.arraycopy(previous.getRecord(), 0, record, 0, Unit.numAttributes);
+		int maskIndex = index;
+		index += Unit.numDirtyWords;
+		for (int word = 0; word < Unit.numDirtyWords; word++) {
+			int dirty = data.get(maskIndex + word);
+			while (dirty != 0) {
+				int bit = Integer.numberOfTrailingZeros(dirty);
+				dirty &= dirty - 1;
+				record[word * 32 + bit] = data.get(index++);
+			}
+		}
+		set(id, unit);
+	}
+
+	/** Takes the current values of an updated player, reusing its snapshot if unchanged */
+	void applyPlayer(Player player) {
+		int id = player.getID();
+		if (id >= this.players.length) {
+			this.players = Arrays.copyOf(this.players, id + 1);
+		}
+		PlayerSnapshot previous = this.players[id];
+		if (previous == null || !previous.matches(player)) {
+			this.players[id] = new PlayerSnapshot(player);
+		}
+	}
+
+	/**
+	 * Returns an immutable snapshot of the current state. Only the chunk table is
+	 * copied; later writes copy the chunks they touch.
+	 */
+	FrameSnapshot publish(int frame) {
+		FrameSnapshot snapshot = new FrameSnapshot(frame, this.chunks.clone(), this.unitCount,
+				this.players.clone());
+		reclaim();
+		this.published.add(new Published(snapshot, this.version));
+		this.version++;
+		return snapshot;
+	}
+
+	/** Moves the retired unit records which no remaining snapshot contains to the free list */
+	private void reclaim() {
+		int numPublished = 0;
+		for (int i = 0; i < this.published.size(); i++) {
+			Published snapshot = this.published.get(i);
+			if (snapshot.get() != null) {
+				this.published.set(numPublished++, snapshot);
+			}
+		}
+		truncate(this.published, numPublished);
+		int numRetired = 0;
+		for (int i = 0; i < this.retired.size(); i++) {
+			UnitSnapshot unit = this.retired.get(i);
+			if (isPublished(unit)) {
+				this.retired.set(numRetired++, unit);
+			} else {
+				this.free.add(unit);
+			}
+		}
+		truncate(this.retired, numRetired);
+	}
+
+	/** Whether a snapshot containing the unit record may still be read */
+	private boolean isPublished(UnitSnapshot unit) {
+		for (int i = 0; i < this.published.size(); i++) {
+			int version = this.published.get(i).version;
+			if (version >= unit.firstVersion && version <= unit.lastVersion) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void truncate(ArrayList<?> list, int size) {
+		for (int i = list.size() - 1; i >= size; i--) {
+			list.remove(i);
+		}
+	}
+
+	/** Returns a unit record to be filled, reusing a free one if there is any */
+	private UnitSnapshot allocate() {
+		int numFree = this.free.size();
+		UnitSnapshot unit = (numFree > 0) ? this.free.remove(numFree - 1)
+				: new UnitSnapshot(new int[Unit.numAttributes]);
+		unit.firstVersion = this.version;
+		unit.lastVersion = Integer.MAX_VALUE;
+		return unit;
+	}
+
+	private UnitSnapshot get(int id) {
+		int chunk = id >>> FrameSnapshot.chunkShift;
+		if (chunk >= this.chunks.length || this.chunks[chunk] == null) {
+			return null;
+		}
+		return this.chunks[chunk][id & (FrameSnapshot.chunkSize - 1)];
+	}
+
+	private void set(int id, UnitSnapshot unit) {
+		int chunk = id >>> FrameSnapshot.chunkShift;
+		if (chunk >= this.chunks.length) {
+			if (unit == null) {
+				return;
+			}
+			int size = Math.max(this.chunks.length * 2, chunk + 1);
+			this.chunks = Arrays.copyOf(this.chunks, size);
+			this.chunkVersions = Arrays.copyOf(this.chunkVersions, size);
+		}
+		if (this.chunks[chunk] == null) {
+			this.chunks[chunk] = new UnitSnapshot[FrameSnapshot.chunkSize];
+			this.chunkVersions[chunk] = this.version;
+		} else if (this.chunkVersions[chunk] != this.version) {
+			// the chunk may be shared with a published snapshot
+			this.chunks[chunk] = this.chunks[chunk].clone();
+			this.chunkVersions[chunk] = this.version;
+		}
+		int slot = id & (FrameSnapshot.chunkSize - 1);
+		UnitSnapshot replaced = this.chunks[chunk][slot];
+		if (replaced != null) {
+			// last in the snapshot published before this version, or in none if it was added in this version
+			replaced.lastVersion = this.version - 1;
+			this.retired.add(replaced);
+		}
+		this.chunks[chunk][slot] = unit;
+	}
+}
@@ -0,0 +1,311 @@
+package jnibwapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import jnibwapi.Position.PosType;
+
+/**
+ * HPA*-style pathfinding over the graph of BWTA regions and choke points, used
+ * by {@link Map#getHierarchicalDistance(Position, Position)}. Built by
+ * {@link Map#initialize}: each choke point gets a walkable anchor tile near its
+ * centre, and a Dijkstra search from the anchor limited to the tiles of the two
+ * regions it joins gives the cost from the choke point to each of those tiles
+ * and to the anchors of the neighbouring choke points. Only the costs within
+ * each region are kept, so the tables hold about as many ints as there are
+ * tiles times the number of choke points per region. The shortest routes between
+ * all pairs of choke points are then precomputed over the graph of anchors, so a
+ * query only reads the costs from the start to the choke points of its region
+ * and from the choke points of the end's region to the end.
+ *
+ * Routes are assumed to pass through the anchors of the choke points and paths
+ * to a choke point to stay within its regions, so the distances may be
+ * slightly longer than those of a full A* search.
+ */
+final class HierarchicalPathfinder {
+	private final boolean[] walkable;
+	private final int width;
+	private final int height;
+	/** Region ID for each build tile */
+	private final int[] regionMap;
+	/** Position of each build tile in the list of its region's tiles */
+	private final int[] localIndex;
+	/** Walkable tile near the centre of each choke point, or -1 */
+	private final int[] anchors;
+	/** Cost of the shortest route between each pair of choke points, or -1 */
+	private final int[][] routeCosts;
+	/** Choke point before each choke point on the shortest route from the first index */
+	private final int[][] predecessors;
+	/** Indices of the choke points bordering each region, by region ID */
+	private final HashMap<Integer, int[]> regionChokePoints = new HashMap<>();
+	/**
+	 * Cost from each of a region's choke points to each of its tiles (by
+	 * localIndex) or -1, by region ID
+	 */
+	private final HashMap<Integer, int[][]> regionCosts = new HashMap<>();
+
+	HierarchicalPathfinder(boolean[] walkable, int width, int height, int[] regionMap, List<Region> regions,
+			List<ChokePoint> chokePoints) {
+		this.walkable = walkable;
+		this.width = width;
+		this.height = height;
+		this.regionMap = regionMap;
+		List<ChokePoint> chokePointList = new ArrayList<>(chokePoints);
+		int numChokePoints = chokePointList.size();
+		HashMap<ChokePoint, Integer> indices = new HashMap<>();
+		this.anchors = new int[numChokePoints];
+		for (int i = 0; i < numChokePoints; i++) {
+			ChokePoint chokePoint = chokePointList.get(i);
+			indices.put(chokePoint, i);
+			this.anchors[i] = nearestWalkable(chokePoint.getCenter().getBX(), chokePoint.getCenter().getBY(), -1);
+		}
+
+		// the tiles of each region, indexed by region ID
+		int size = width * height;
+		int highestRegionID = 0;
+		for (int tile = 0; tile < size; tile++) {
+			highestRegionID = Math.max(highestRegionID, regionMap[tile]);
+		}
+		for (Region region : regions) {
+			highestRegionID = Math.max(highestRegionID, region.getID());
+		}
+		this.localIndex = new int[size];
+		int[] regionSizes = new int[highestRegionID + 1];
+		for (int tile = 0; tile < size; tile++) {
+			if (regionMap[tile] >= 0) {
+				this.localIndex[tile] = regionSizes[regionMap[tile]]++;
+			}
+		}
+		int[][] regionTiles = new int[highestRegionID + 1][];
+		for (int id = 0; id <= highestRegionID; id++) {
+			regionTiles[id] = new int[regionSizes[id]];
+		}
+		for (int tile = 0; tile < size; tile++) {
+			if (regionMap[tile] >= 0) {
+				regionTiles[regionMap[tile]][this.localIndex[tile]] = tile;
+			}
+		}
+		for (Region region : regions) {
+			int[] members = new int[region.getChokePoints().size()];
+			int numMembers = 0;
+			for (ChokePoint chokePoint : region.getChokePoints()) {
+				Integer index = indices.get(chokePoint);
+				if (index != null && this.anchors[index] >= 0) {
+					members[numMembers++] = index;
+				}
+			}
+			this.regionChokePoints.put(region.getID(), Arrays.copyOf(members, numMembers));
+			this.regionCosts.put(region.getID(), new int[numMembers][]);
+		}
+
+		// search from each choke point over its two regions, keeping the costs to their tiles and to other anchors
+		int[][] edgeCosts = new int[numChokePoints][numChokePoints];
+		boolean[] searchable = new boolean[size];
+		int[] costs = new int[size];
+		AStarEngine engine = AStarEngine.get();
+		for (int i = 0; i < numChokePoints; i++) {
+			Arrays.fill(edgeCosts[i], -1);
+			if (this.anchors[i] < 0) {
+				continue;
+			}
+			ChokePoint chokePoint = chokePointList.get(i);
+			int[][] sides = { regionTiles[chokePoint.getFirstRegion().getID()],
+					regionTiles[chokePoint.getSecondRegion().getID()] };
+			for (int[] tiles : sides) {
+				for (int tile : tiles) {
+					searchable[tile] = walkable[tile];
+				}
+			}
+			for (int anchor : this.anchors) {
+				if (anchor >= 0) {
+					searchable[anchor] = true;
+				}
+			}
+			engine.fill(searchable, width, height, this.anchors[i], costs);
+			for (int j = 0; j < numChokePoints; j++) {
+				if (j != i && this.anchors[j] >= 0) {
+					edgeCosts[i][j] = costs[this.anchors[j]];
+				}
+			}
+			for (Region region : new Region[] { chokePoint.getFirstRegion(), chokePoint.getSecondRegion() }) {
+				int[] tiles = regionTiles[region.getID()];
+				int[] regionCost = new int[tiles.length];
+				for (int t = 0; t < tiles.length; t++) {
+					regionCost[t] = costs[tiles[t]];
+				}
+				int member = indexOf(this.regionChokePoints.get(region.getID()), i);
+				if (member >= 0) {
+					this.regionCosts.get(region.getID())[member] = regionCost;
+				}
+			}
+			for (int[] tiles : sides) {
+				for (int tile : tiles) {
+					searchable[tile] = false;
+				}
+			}
+			for (int anchor : this.anchors) {
+				if (anchor >= 0) {
+					searchable[anchor] = false;
+				}
+			}
+		}
+
+		// Dijkstra from each choke point over the (small, dense) graph
+		this.routeCosts = new int[numChokePoints][numChokePoints];
+		this.predecessors = new int[numChokePoints][numChokePoints];
+		boolean[] done = new boolean[numChokePoints];
+		for (int source = 0; source < numChokePoints; source++) {
+			int[] fromSource = this.routeCosts[source];
+			int[] previous = this.predecessors[source];
+			Arrays.fill(fromSource, -1);
+			Arrays.fill(previous, -1);
+			Arrays.fill(done, false);
+			fromSource[source] = 0;
+			while (true) {
+				int node = -1;
+				for (int i = 0; i < numChokePoints; i++) {
+					if (!done[i] && fromSource[i] >= 0 && (node < 0 || fromSource[i] < fromSource[node])) {
+						node = i;
+					}
+				}
+				if (node < 0) {
+					break;
+				}
+				done[node] = true;
+				for (int i = 0; i < numChokePoints; i++) {
+					int edge = edgeCosts[node][i];
+					if (edge >= 0 && !done[i] && (fromSource[i] < 0 || fromSource[node] + edge < fromSource[i])) {
+						fromSource[i] = fromSource[node] + edge;
+						previous[i] = node;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the cost of the best route between the build tiles through the
+	 * choke point graph, in units of {@link AStarEngine#COST} per tile, or -1 if
+	 * there is none, including when a tile cannot reach the choke points of its
+	 * region without leaving it. If route is not null, the choke points of the
+	 * route are added to it in order.
+	 */
+	int search(int start, int end, List<Integer> route) {
+		int[] startChokePoints = this.regionChokePoints.get(this.regionMap[start]);
+		int[] endChokePoints = this.regionChokePoints.get(this.regionMap[end]);
+		if (startChokePoints == null || endChokePoints == null) {
+			return -1;
+		}
+		// the costs are read from the region tables in place, so a query allocates nothing
+		int[][] startCosts = this.regionCosts.get(this.regionMap[start]);
+		int[][] endCosts = this.regionCosts.get(this.regionMap[end]);
+		int startIndex = this.localIndex[walkableInRegion(start)];
+		int endIndex = this.localIndex[walkableInRegion(end)];
+		int best = -1;
+		int bestFirst = -1;
+		int bestLast = -1;
+		for (int i = 0; i < startChokePoints.length; i++) {
+			int toFirst = (startCosts[i] == null) ? -1 : startCosts[i][startIndex];
+			if (toFirst < 0) {
+				continue;
+			}
+			for (int j = 0; j < endChokePoints.length; j++) {
+				int between = this.routeCosts[startChokePoints[i]][endChokePoints[j]];
+				int fromLast = (endCosts[j] == null) ? -1 : endCosts[j][endIndex];
+				if (between < 0 || fromLast < 0) {
+					continue;
+				}
+				int cost = toFirst + between + fromLast;
+				if (best < 0 || cost < best) {
+					best = cost;
+					bestFirst = startChokePoints[i];
+					bestLast = endChokePoints[j];
+				}
+			}
+		}
+		if (best >= 0 && route != null) {
+			int insertAt = route.size();
+			for (int node = bestLast; node >= 0; node = this.predecessors[bestFirst][node]) {
+				route.add(insertAt, node);
+				if (node == bestFirst) {
+					break;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the build tile whose costs to the choke points of its region are
+	 * used for a query from the given tile: the tile itself if walkable, otherwise
+	 * the closest walkable tile in the same region. Unwalkable tiles have no costs,
+	 * so the tile is returned if there is no such tile nearby.
+	 */
+	private int walkableInRegion(int tile) {
+		if (this.walkable[tile]) {
+			return tile;
+		}
+		int walkableTile = nearestWalkable(tile % this.width, tile / this.width, this.regionMap[tile]);
+		return (walkableTile >= 0) ? walkableTile : tile;
+	}
+
+	private static int indexOf(int[] values, int value) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/** Returns the build tile position of a choke point's anchor */
+	Position getAnchor(int chokePoint) {
+		int anchor = this.anchors[chokePoint];
+		return new Position(anchor % this.width, anchor / this.width, PosType.BUILD);
+	}
+
+	/**
+	 * Returns the build tiles of the shortest path between two build tiles, from
+	 * the tile after start to end, or null if end is not reachable
+	 */
+	List<Position> refine(int start, int end) {
+		AStarEngine engine = AStarEngine.get();
+		if (engine.search(this.walkable, this.width, this.height, start, end) < 0) {
+			return null;
+		}
+		List<Position> tiles = new ArrayList<>();
+		for (int node = end; node != start && node >= 0; node = engine.getParent(node)) {
+			tiles.add(new Position(node % this.width, node / this.width, PosType.BUILD));
+		}
+		for (int i = 0, j = tiles.size() - 1; i < j; i++, j--) {
+			tiles.set(i, tiles.set(j, tiles.get(i)));
+		}
+		return tiles;
+	}
+
+	/**
+	 * Returns the walkable tile closest to (x, y), searching rings up to 4 tiles
+	 * out, or -1. If region is not -1, only tiles of that region are considered.
+	 */
+	private int nearestWalkable(int x, int y, int region) {
+		for (int radius = 0; radius <= 4; radius++) {
+			for (int dy = -radius; dy <= radius; dy++) {
+				for (int dx = -radius; dx <= radius; dx++) {
+					if (Math.max(Math.abs(dx), Math.abs(dy)) != radius) {
+						continue;
+					}
+					int tx = x + dx;
+					int ty = y + dy;
+					if (tx >= 0 && ty >= 0 && tx < this.width && ty < this.height
+							&& this.walkable[tx + this.width * ty]
+							&& (region == -1 || this.regionMap[tx + this.width * ty] == region)) {
+						return tx + this.width * ty;
+					}
+				}
+			}
+		}
+		return -1;
+	}
+}
@@ -1,14 +1,24 @@
 package jnibwapi;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -17,6 +27,8 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import jnibwapi.types.BulletType;
 import jnibwapi.types.BulletType.BulletTypes;
@@ -43,6 +55,7 @@ import jnibwapi.types.WeaponType;
 import jnibwapi.types.WeaponType.WeaponTypes;
 import jnibwapi.util.BWColor;
 import jnibwapi.util.ErrorCode;
+import jnibwapi.util.UnitFilter;
 
 /**
  * JNI interface for the Brood War API.<br>
@@ -75,6 +88,7 @@ public class JNIBWAPI {
 	private final BWAPIEventListener listener;
 	/** use BWTA for map analysis if not null */
 	private final File BWTAdir;
+	private boolean distanceFieldsEnabled = false;
 	/** used charset (Korean usually) */
 	private final Charset charset;
 
@@ -94,10 +108,18 @@ public class JNIBWAPI {
 			// load the BWAPI client library
 			File dll1 = new File(DLLdir + File.separator + "gmp-vc90-mt.dll");
 			File dll2 = new File(DLLdir + File.separator + "mpfr-vc90-mt.dll");
-			File dll3 = new File(DLLdir + File.separator + "client-bridge-" + System.getProperty("os.arch") + ".dll");
+			// mapLibraryName gives client-bridge-<arch>.dll on Windows, but also allows a
+			// stub bridge (libclient-bridge-<arch>.so) to be loaded elsewhere
+			File dll3 = new File(DLLdir + File.separator
+					+ System.mapLibraryName("client-bridge-" + System.getProperty("os.arch")));
 			try {
-				System.load(dll1.getAbsolutePath());
-				System.load(dll2.getAbsolutePath());
+				// the CGAL dependencies are only shipped with the Windows bridge
+				if (dll1.exists()) {
+					System.load(dll1.getAbsolutePath());
+				}
+				if (dll2.exists()) {
+					System.load(dll2.getAbsolutePath());
+				}
 				System.load(dll3.getAbsolutePath());
 				System.out.println("Loaded client bridge library.");
 			} catch (UnsatisfiedLinkError e) {
@@ -116,6 +138,7 @@ public class JNIBWAPI {
 			System.out.println("Korean character set not available. Some characters may not be read properly");
 		}
 		this.charset = charset;
+		this.frameDrawList = new DrawList(charset);
 	}
 
 	/**
@@ -129,15 +152,98 @@ public class JNIBWAPI {
 		startClient(this);
 	}
 
+	/**
+	 * View of the bridge's data buffer. Per-frame queries write their results into
+	 * this buffer and return the number of ints written, so reading them does not
+	 * allocate. Only valid until the next such query.
+	 */
+	private IntBuffer dataBuffer;
+
+	/**
+	 * Views of the bridge's event buffers, filled with a frame's events before
+	 * {@link #eventsOccurred(int)} is called. Separate from the data buffer so that
+	 * listeners can query the bridge while the events are dispatched.
+	 */
+	private IntBuffer eventBuffer;
+	private ByteBuffer eventTextBuffer;
+
+	/** Number of ints per event in the event buffer */
+	private static final int eventSize = 5;
+	/**
+	 * The keyboard state is stored at the end of the event buffer: 256 bits of
+	 * keys that are down, then 256 bits of keys pressed this frame
+	 */
+	private static final int keyMaskWords = 256 / 32;
+	private int keyStateIndex;
+
+	/**
+	 * View of the bridge's command buffer, see {@link #queueCommand(int, int, int, int, int, int)}.
+	 * The header holds the number of queued commands and the number of commands
+	 * in the last executed batch, followed by {@link #commandSize} ints per command.
+	 */
+	private IntBuffer commandBuffer;
+	private CommandResults commandResults;
+	/** Whether commands were queued since the last flush, so the bridge executes them at the end of the frame */
+	private boolean commandsQueued = false;
+	static final int commandQueuedCountIndex = 0;
+	static final int commandResultCountIndex = 1;
+	static final int commandHeaderSize = 2;
+	/** unit ID, command type ID, target unit ID, x, y, extra, success, error code */
+	static final int commandSize = 8;
+
+	/**
+	 * Draw lists recorded in Java, passed to the bridge in one call after the
+	 * matchFrame event (see {@link #submitDrawLists()}).
+	 */
+	private final DrawList frameDrawList;
+	private final List<DrawList> drawLayers = new ArrayList<>();
+	private ByteBuffer drawCommandBuffer = ByteBuffer.allocateDirect(0);
+	private ByteBuffer drawTextBuffer = ByteBuffer.allocateDirect(0);
+
+	/**
+	 * Unit attribute groups sent by the bridge in the current game, and those
+	 * requested for the next game (see {@link #setUnitAttributeGroups(int)})
+	 */
+	private int unitAttributeGroups = Unit.ALL_GROUPS;
+	private int pendingUnitAttributeGroups = Unit.ALL_GROUPS;
+	/** Attributes in the records of added units, see {@link Unit#getAttributeColumns(int)} */
+	private int[] unitColumns = Unit.getAttributeColumns(Unit.ALL_GROUPS);
+
 	// game state
 	private int gameFrame = 0;
 	private Map map;
-	private final HashMap<Integer, Unit> units = new HashMap<>();
+	private final UnitTable units = new UnitTable();
+	private final Collection<Unit> allUnits = Collections.unmodifiableCollection(this.units);
 	private final List<Unit> staticNeutralUnits = new LinkedList<>();
-	private List<Unit> playerUnits = new LinkedList<>();
-	private List<Unit> alliedUnits = new LinkedList<>();
-	private List<Unit> enemyUnits = new LinkedList<>();
-	private List<Unit> neutralUnits = new LinkedList<>();
+	// refilled in place each frame, so the views returned by getMyUnits() etc. stay valid
+	private final ArrayList<Unit> playerUnits = new ArrayList<>();
+	private final ArrayList<Unit> alliedUnits = new ArrayList<>();
+	private final ArrayList<Unit> enemyUnits = new ArrayList<>();
+	private final ArrayList<Unit> neutralUnits = new ArrayList<>();
+	private final List<Unit> playerUnitsView = Collections.unmodifiableList(this.playerUnits);
+	private final List<Unit> alliedUnitsView = Collections.unmodifiableList(this.alliedUnits);
+	private final List<Unit> enemyUnitsView = Collections.unmodifiableList(this.enemyUnits);
+	private final List<Unit> neutralUnitsView = Collections.unmodifiableList(this.neutralUnits);
+	// own and enemy units by type, refilled with the lists above
+	private final UnitTypeIndex playerUnitsByType = new UnitTypeIndex();
+	private final UnitTypeIndex enemyUnitsByType = new UnitTypeIndex();
+	private final List<UnitView> unitViews = new ArrayList<>();
+	// units removed in the current frame's delta, for the unit views
+	private final ArrayList<Unit> removedUnits = new ArrayList<>();
+	private final UnitChanges unitChanges = new UnitChanges();
+	// immutable snapshots for other threads, null unless enabled
+	private boolean pendingSnapshotsEnabled = false;
+	private FrameSnapshotBuilder snapshotBuilder = null;
+	private volatile FrameSnapshot latestSnapshot = null;
+	private UnitHistory unitHistory = null;
+	private final EnemyMemory enemyMemory = new EnemyMemory();
+
+	// relation of each player to self, indexed by player ID
+	private static final byte RELATION_SELF = 0;
+	private static final byte RELATION_ALLIED = 1;
+	private static final byte RELATION_ENEMY = 2;
+	private static final byte RELATION_NEUTRAL = 3;
+	private byte[] playerRelations = new byte[0];
 
 	// player lists
 	private Player self;
@@ -150,27 +256,107 @@ public class JNIBWAPI {
 	private native void startClient(JNIBWAPI jniBWAPI);
 
 	// query methods
-	private native int getFrame();
-
 	/** See https://code.google.com/p/bwapi/wiki/Game#getReplayFrameCount */
 	public native int getReplayFrameTotal();
 
 	private native int[] getPlayersData();
 
-	private native int[] getPlayerUpdate(int playerID);
+	/** Returns the bridge's data buffer, which is shared rather than copied */
+	private native ByteBuffer getDataBuffer();
+
+	/** Returns the bridge's event buffer, see {@link #eventsOccurred(int)} */
+	private native ByteBuffer getEventBuffer();
+
+	/** Returns the bytes of the text of the events in the event buffer */
+	private native ByteBuffer getEventTextBuffer();
 
 	/**
 	 * Returns string as a byte[] to properly handle ASCII-extended characters
 	 */
 	private native byte[] getPlayerName(int playerID);
 
-	private native int[] getResearchStatus(int playerID);
+	/**
+	 * Writes the frame count, the player updates and the unit delta to the data
+	 * buffer in one call and returns the number of ints written. See
+	 * {@link #updateFrame()} for the layout.
+	 */
+	private native int getFrameSnapshot();
+
+	/** Writes to the data buffer and returns the number of ints written */
+	private native int getStaticNeutralUnitsData();
+
+	/** Sets the unit attribute groups the bridge sends from the next game on */
+	private native void subscribeUnitAttributes(int groups);
 
-	private native int[] getUpgradeStatus(int playerID);
+	/**
+	 * Declares which unit attribute groups the bot reads, as a combination of the
+	 * Unit.GROUP_ constants. The bridge neither computes nor sends the attributes
+	 * of other groups, and their accessors in {@link Unit} throw an
+	 * IllegalStateException. Meant to be called from
+	 * {@link BWAPIEventListener#connected()}; takes effect at the start of the next
+	 * game. All groups are sent by default.
+	 */
+	public void setUnitAttributeGroups(int groups) {
+		this.pendingUnitAttributeGroups = groups & Unit.ALL_GROUPS;
+		subscribeUnitAttributes(this.pendingUnitAttributeGroups);
+	}
 
-	private native int[] getAllUnitsData();
+	/** Returns the unit attribute groups sent in the current game */
+	public int getUnitAttributeGroups() {
+		return this.unitAttributeGroups;
+	}
 
-	private native int[] getStaticNeutralUnitsData();
+	/**
+	 * Enables publishing an immutable {@link FrameSnapshot} of the units and
+	 * players each frame, for analysis on other threads. Takes effect at the start
+	 * of the next game. Disabled by default, as it keeps a second copy of the unit
+	 * state.
+	 */
+	public void setSnapshotsEnabled(boolean enabled) {
+		this.pendingSnapshotsEnabled = enabled;
+	}
+
+	/**
+	 * Enables precomputing ground distance fields from every base location and
+	 * choke point when the map is loaded (see {@link Map#getDistanceField(BaseLocation)}).
+	 * They are stored gzipped next to the map's BWTA data, so later games on the
+	 * same map load them instead. Requires a BWTA directory; takes effect from the
+	 * next game.
+	 */
+	public void setDistanceFieldsEnabled(boolean enabled) {
+		this.distanceFieldsEnabled = enabled;
+	}
+
+	/**
+	 * Starts recording the position, hit points and shields of all units over the
+	 * last frames, in a ring buffer outside the Java heap of at most maxBytes. The
+	 * number of units which can be recorded at the same time is the number that
+	 * fit in maxBytes; see {@link UnitHistory}. Replaces any existing history.
+	 */
+	public UnitHistory enableUnitHistory(int frames, int maxBytes) {
+		this.unitHistory = new UnitHistory(frames, maxBytes, this.unitAttributeGroups);
+		return this.unitHistory;
+	}
+
+	/** Stops recording the unit history, releasing its buffer */
+	public void disableUnitHistory() {
+		this.unitHistory = null;
+	}
+
+	/** Returns the unit history, or null if it is not enabled */
+	public UnitHistory getUnitHistory() {
+		return this.unitHistory;
+	}
+
+	/**
+	 * Returns the snapshot of the most recent frame, or null if snapshots are not
+	 * enabled. Safe to call from any thread: snapshots are published with a single
+	 * volatile write once complete, and are never modified afterwards. The
+	 * snapshot is published before the frame's events are dispatched.
+	 */
+	public FrameSnapshot getLatestSnapshot() {
+		return this.latestSnapshot;
+	}
 
 	private native int[] getRaceTypes();
 
@@ -220,6 +406,20 @@ public class JNIBWAPI {
 
 	private native int[] getUnitIdsOnTile(int tx, int ty);
 
+	/**
+	 * Spatial queries using BWAPI's unit finder. Each writes the number of
+	 * matching units followed by their IDs to the data buffer (once per center
+	 * or rectangle for the batch variants) and returns the number of ints
+	 * written. Coordinates are in pixels, filters are {@link UnitFilter} masks.
+	 */
+	private native int findUnitsInRadius(int x, int y, int radius, int filter);
+
+	private native int findUnitsInRectangle(int left, int top, int right, int bottom, int filter);
+
+	private native int findUnitsInRadiusBatch(int[] centers, int numCenters, int radius, int filter);
+
+	private native int findUnitsInRectangleBatch(int[] rectangles, int numRectangles, int filter);
+
 	// map data
 	private native void analyzeTerrain();
 
@@ -280,6 +480,80 @@ public class JNIBWAPI {
 				cmd.getExtra());
 	}
 
+	/** Returns the bridge's command buffer */
+	private native ByteBuffer getCommandBuffer();
+
+	/**
+	 * Executes the queued commands and returns the number that succeeded.
+	 */
+	private native int executeCommands();
+
+	/**
+	 * Appends a command to the command buffer instead of issuing it immediately.
+	 * Queued commands are executed in the order they were queued by
+	 * {@link #flushCommands()}, or by the bridge at the end of the frame if they
+	 * have not been flushed. If the buffer is full, the queued commands are
+	 * flushed first.<br>
+	 *
+	 * The arguments match those of a {@link UnitCommand}: x and y are in the
+	 * position type of the command (see {@link UnitCommand#getPosType()}) and
+	 * targetUnitID is -1 if there is no target.
+	 *
+	 * @return the index of the command in the batch it will be executed in
+	 */
+	public int queueCommand(int unitID, int unitCommandTypeID, int targetUnitID, int x, int y, int extra) {
+		IntBuffer commands = this.commandBuffer;
+		int numQueued = commands.get(commandQueuedCountIndex);
+		if (commandHeaderSize + (numQueued + 1) * commandSize > commands.capacity()) {
+			flushCommands();
+			numQueued = 0;
+		}
+		int index = commandHeaderSize + numQueued * commandSize;
+		commands.put(index, unitID);
+		commands.put(index + 1, unitCommandTypeID);
+		commands.put(index + 2, targetUnitID);
+		commands.put(index + 3, x);
+		commands.put(index + 4, y);
+		commands.put(index + 5, extra);
+		commands.put(commandQueuedCountIndex, numQueued + 1);
+		this.commandsQueued = true;
+		return numQueued;
+	}
+
+	/**
+	 * Appends a command to the command buffer, see
+	 * {@link #queueCommand(int, int, int, int, int, int)}.
+	 */
+	public int queueCommand(UnitCommand cmd) {
+		return queueCommand(cmd.getUnit().getID(), cmd.getType().getID(), cmd.getTargetUnitID(), cmd.getX(),
+				cmd.getY(), cmd.getExtra());
+	}
+
+	/**
+	 * Executes the queued commands in one call to the bridge and returns the
+	 * number that succeeded. The result of each command can then be read from
+	 * {@link #getCommandResults()}.
+	 */
+	public int flushCommands() {
+		if (this.commandBuffer.get(commandQueuedCountIndex) == 0) {
+			return 0;
+		}
+		int numSucceeded = executeCommands();
+		this.commandResults.copy(this.commandBuffer);
+		this.commandsQueued = false;
+		return numSucceeded;
+	}
+
+	/**
+	 * Returns a cursor over the results of the last executed batch of commands,
+	 * whether it was executed by {@link #flushCommands()} or at the end of the
+	 * previous frame. The results stay valid until the next batch is executed.
+	 */
+	public CommandResults getCommandResults() {
+		this.commandResults.reset();
+		return this.commandResults;
+	}
+
 	// utility commands
 	/** Draw health boxes above units */
 	public native void drawHealth(boolean enable);
@@ -386,29 +660,120 @@ public class JNIBWAPI {
 		drawText(a.getPX(), a.getPY(), msg, screenCoords);
 	}
 
+	/**
+	 * Draws the given number of draw lists from the command buffer. Each list is
+	 * its number of ints of commands and bytes of text, then its commands (see
+	 * {@link DrawList}). The text of the lists follows each other in the text
+	 * buffer.
+	 */
+	private native void drawCommands(ByteBuffer commandBuffer, ByteBuffer textBuffer, int numLists);
+
+	/**
+	 * Returns the draw list for the current frame. Everything recorded in it is
+	 * drawn after the matchFrame event and then cleared, so it is meant to be
+	 * filled during {@link BWAPIEventListener#matchFrame()}.
+	 */
+	public DrawList getDrawList() {
+		return this.frameDrawList;
+	}
+
+	/**
+	 * Creates a persistent draw layer, which is drawn every frame without being
+	 * recorded again until it is cleared or removed. Meant for static overlays.
+	 */
+	public DrawList createDrawLayer() {
+		DrawList layer = new DrawList(this.charset);
+		this.drawLayers.add(layer);
+		return layer;
+	}
+
+	/** Stops drawing a layer created by {@link #createDrawLayer()} */
+	public void removeDrawLayer(DrawList layer) {
+		this.drawLayers.remove(layer);
+	}
+
+	/**
+	 * Copies the persistent draw layers and the frame's draw list to direct
+	 * buffers and passes them to the bridge in a single call, then clears the
+	 * frame's draw list. The buffers grow as needed and are reused.
+	 */
+	private void submitDrawLists() {
+		int numLists = 0;
+		int length = 0;
+		int textLength = 0;
+		for (DrawList list : this.drawLayers) {
+			if (!list.isEmpty()) {
+				numLists++;
+				length += 2 + list.getLength();
+				textLength += list.getTextLength();
+			}
+		}
+		if (!this.frameDrawList.isEmpty()) {
+			numLists++;
+			length += 2 + this.frameDrawList.getLength();
+			textLength += this.frameDrawList.getTextLength();
+		}
+		if (numLists == 0) {
+			return;
+		}
+
+		if (length * 4 > this.drawCommandBuffer.capacity()) {
+			int capacity = Math.max(length * 4, this.drawCommandBuffer.capacity() * 2);
+			this.drawCommandBuffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+		}
+		if (textLength > this.drawTextBuffer.capacity()) {
+			this.drawTextBuffer = ByteBuffer.allocateDirect(Math.max(textLength, this.drawTextBuffer.capacity() * 2));
+		}
+		IntBuffer commands = this.drawCommandBuffer.asIntBuffer();
+		int index = 0;
+		int textIndex = 0;
+		for (DrawList list : this.drawLayers) {
+			if (!list.isEmpty()) {
+				index = writeDrawList(list, commands, index, textIndex);
+				textIndex += list.getTextLength();
+			}
+		}
+		if (!this.frameDrawList.isEmpty()) {
+			writeDrawList(this.frameDrawList, commands, index, textIndex);
+			this.frameDrawList.clear();
+		}
+		drawCommands(this.drawCommandBuffer, this.drawTextBuffer, numLists);
+	}
+
+	private int writeDrawList(DrawList list, IntBuffer commands, int index, int textIndex) {
+		commands.put(index++, list.getLength());
+		commands.put(index++, list.getTextLength());
+		list.writeTo(commands, index, this.drawTextBuffer, textIndex);
+		return index + list.getLength();
+	}
+
 	// Extended Commands
-	private native boolean isVisible(int tileX, int tileY);
+	/** Primitive overload of {@link #isVisible(Position)} for a build tile */
+	public native boolean isVisible(int tileX, int tileY);
 
 	/** See https://code.google.com/p/bwapi/wiki/Game#isVisible */
 	public boolean isVisible(Position p) {
 		return isVisible(p.getBX(), p.getBY());
 	}
 
-	private native boolean isExplored(int tileX, int tileY);
+	/** Primitive overload of {@link #isExplored(Position)} for a build tile */
+	public native boolean isExplored(int tileX, int tileY);
 
 	/** See https://code.google.com/p/bwapi/wiki/Game#isExplored */
 	public boolean isExplored(Position p) {
 		return isExplored(p.getBX(), p.getBY());
 	}
 
-	private native boolean isBuildable(int tx, int ty, boolean includeBuildings);
+	/** Primitive overload of {@link #isBuildable(Position, boolean)} for a build tile */
+	public native boolean isBuildable(int tx, int ty, boolean includeBuildings);
 
 	/** See https://code.google.com/p/bwapi/wiki/Game#isBuildable */
 	public boolean isBuildable(Position p, boolean includeBuildings) {
 		return isBuildable(p.getBX(), p.getBY(), includeBuildings);
 	}
 
-	private native boolean hasCreep(int tileX, int tileY);
+	/** Primitive overload of {@link #hasCreep(Position)} for a build tile */
+	public native boolean hasCreep(int tileX, int tileY);
 
 	/** See https://code.google.com/p/bwapi/wiki/Game#hasCreep */
 	public boolean hasCreep(Position p) {
@@ -451,7 +816,8 @@ public class JNIBWAPI {
 		return hasPowerPrecise(p.getPX(), p.getPY(), ut.getID());
 	}
 
-	private native boolean hasPath(int fromX, int fromY, int toX, int toY);
+	/** Primitive overload of {@link #hasPath(Position, Position)} for pixel coordinates */
+	public native boolean hasPath(int fromX, int fromY, int toX, int toY);
 
 	/** See https://code.google.com/p/bwapi/wiki/Game#hasPath */
 	public boolean hasPath(Position from, Position to) {
@@ -595,22 +961,92 @@ public class JNIBWAPI {
 
 	/** See https://code.google.com/p/bwapi/wiki/Game#getAllUnits */
 	public Collection<Unit> getAllUnits() {
-		return Collections.unmodifiableCollection(this.units.values());
+		return this.allUnits;
 	}
 
-	/** Retrieve the cached list of the current player's units */
+	/**
+	 * Calls the visitor for every unit, without the allocation of iterating over
+	 * {@link #getAllUnits()}.
+	 */
+	public void forEachUnit(UnitVisitor visitor) {
+		this.units.visitAll(visitor);
+	}
+
+	/**
+	 * Retrieve the cached list of the current player's units<br>
+	 * The cached unit lists are views which are updated in place at the start of
+	 * each frame, so they always hold the current frame's units. Copy them to keep
+	 * a previous frame's units.
+	 */
 	public List<Unit> getMyUnits() {
-		return Collections.unmodifiableList(this.playerUnits);
+		return this.playerUnitsView;
+	}
+
+	/** Retrieve the cached list of the current player's units of the given type */
+	public List<Unit> getMyUnits(UnitType type) {
+		return this.playerUnitsByType.getUnits(type.getID());
+	}
+
+	/**
+	 * Number of the current player's units of the given type, counting only
+	 * completed units if completedOnly is set. Counting completed units requires
+	 * the {@link Unit#GROUP_FLAGS} attribute group.
+	 */
+	public int countMyUnits(UnitType type, boolean completedOnly) {
+		return count(this.playerUnitsByType, type, completedOnly);
+	}
+
+	/**
+	 * Number of the current player's units of the given type which are still
+	 * being built, trained or morphed. Requires the {@link Unit#GROUP_FLAGS}
+	 * attribute group.
+	 */
+	public int countMyUnitsInProduction(UnitType type) {
+		return count(this.playerUnitsByType, type, false) - count(this.playerUnitsByType, type, true);
 	}
 
 	/** Retrieve the cached list of allied players' visible units */
 	public List<Unit> getAlliedUnits() {
-		return Collections.unmodifiableList(this.alliedUnits);
+		return this.alliedUnitsView;
 	}
 
 	/** Retrieve the cached list of enemy players' visible units */
 	public List<Unit> getEnemyUnits() {
-		return Collections.unmodifiableList(this.enemyUnits);
+		return this.enemyUnitsView;
+	}
+
+	/** Retrieve the cached list of enemy players' visible units of the given type */
+	public List<Unit> getEnemyUnits(UnitType type) {
+		return this.enemyUnitsByType.getUnits(type.getID());
+	}
+
+	/**
+	 * Number of enemy players' visible units of the given type, counting only
+	 * completed units if completedOnly is set. Counting completed units requires
+	 * the {@link Unit#GROUP_FLAGS} attribute group.
+	 */
+	public int countEnemyUnits(UnitType type, boolean completedOnly) {
+		return count(this.enemyUnitsByType, type, completedOnly);
+	}
+
+	/**
+	 * Number of enemy players' visible units of the given type which are still
+	 * being built, trained or morphed. Requires the {@link Unit#GROUP_FLAGS}
+	 * attribute group.
+	 */
+	public int countEnemyUnitsInProduction(UnitType type) {
+		return count(this.enemyUnitsByType, type, false) - count(this.enemyUnitsByType, type, true);
+	}
+
+	private int count(UnitTypeIndex index, UnitType type, boolean completedOnly) {
+		if (!completedOnly) {
+			return index.count(type.getID());
+		}
+		if ((this.unitAttributeGroups & Unit.GROUP_FLAGS) == 0) {
+			throw new IllegalStateException("Unit attribute group " + Unit.GROUP_FLAGS
+					+ " is not subscribed, see JNIBWAPI.setUnitAttributeGroups");
+		}
+		return index.countCompleted(type.getID());
 	}
 
 	/**
@@ -618,7 +1054,55 @@ public class JNIBWAPI {
 	 * See https://code.google.com/p/bwapi/wiki/Game#getNeutralUnits
 	 */
 	public List<Unit> getNeutralUnits() {
-		return Collections.unmodifiableList(this.neutralUnits);
+		return this.neutralUnitsView;
+	}
+
+	/**
+	 * Returns the log of the units which changed in the current frame, grouped by
+	 * kind of change. It is refilled in place at the start of each frame.
+	 */
+	public UnitChanges getUnitChanges() {
+		return this.unitChanges;
+	}
+
+	/**
+	 * Returns the last known state of enemy units which went out of vision, see
+	 * {@link EnemyMemory}.
+	 */
+	public EnemyMemory getEnemyMemory() {
+		return this.enemyMemory;
+	}
+
+	/**
+	 * Registers a view of the units matching the predicate. Its members are
+	 * updated at the start of each frame, together with all other views, and its
+	 * listeners are notified of units joining and leaving it. The view starts
+	 * empty and is filled at the next frame.
+	 */
+	public UnitView createUnitView(UnitPredicate predicate) {
+		UnitView view = new UnitView(predicate);
+		this.unitViews.add(view);
+		return view;
+	}
+
+	/**
+	 * Registers a view of the units with all of the requiredFlags and none of the
+	 * excludedFlags set, using the Unit.FLAG_* masks. Requires the
+	 * {@link Unit#GROUP_FLAGS} attribute group.
+	 */
+	public UnitView createUnitView(final long requiredFlags, final long excludedFlags) {
+		return createUnitView(new UnitPredicate() {
+			@Override
+			public boolean test(Unit unit) {
+				long flags = unit.getFlags();
+				return (flags & requiredFlags) == requiredFlags && (flags & excludedFlags) == 0;
+			}
+		});
+	}
+
+	/** Stops updating a view created by {@link #createUnitView(UnitPredicate)} */
+	public void removeUnitView(UnitView view) {
+		this.unitViews.remove(view);
 	}
 
 	/**
@@ -638,6 +1122,137 @@ public class JNIBWAPI {
 		return units;
 	}
 
+	/**
+	 * Writes the IDs of the units within radius pixels of center which match the
+	 * filter (see {@link UnitFilter}) into ids, which can be reused between
+	 * queries. Returns the number of matching units; if it is larger than
+	 * ids.length, only the first ids.length IDs are written.
+	 */
+	public int getUnitIdsInRadius(Position center, int radius, int filter, int[] ids) {
+		return getUnitIdsInRadius(center.getPX(), center.getPY(), radius, filter, ids);
+	}
+
+	/** Primitive overload of {@link #getUnitIdsInRadius(Position, int, int, int[])} for pixel coordinates */
+	public int getUnitIdsInRadius(int px, int py, int radius, int filter, int[] ids) {
+		findUnitsInRadius(px, py, radius, filter);
+		return readUnitIds(0, ids, 0);
+	}
+
+	/** See https://code.google.com/p/bwapi/wiki/Game#getUnitsInRadius */
+	public List<Unit> getUnitsInRadius(Position center, int radius, int filter) {
+		findUnitsInRadius(center.getPX(), center.getPY(), radius, filter);
+		return readUnits(0);
+	}
+
+	/**
+	 * Writes the IDs of the units in the rectangle which match the filter (see
+	 * {@link UnitFilter}) into ids, which can be reused between queries. Returns
+	 * the number of matching units; if it is larger than ids.length, only the
+	 * first ids.length IDs are written.
+	 */
+	public int getUnitIdsInRectangle(Position topLeft, Position bottomRight, int filter, int[] ids) {
+		return getUnitIdsInRectangle(topLeft.getPX(), topLeft.getPY(), bottomRight.getPX(), bottomRight.getPY(), filter,
+				ids);
+	}
+
+	/** Primitive overload of {@link #getUnitIdsInRectangle(Position, Position, int, int[])} for pixel coordinates */
+	public int getUnitIdsInRectangle(int left, int top, int right, int bottom, int filter, int[] ids) {
+		findUnitsInRectangle(left, top, right, bottom, filter);
+		return readUnitIds(0, ids, 0);
+	}
+
+	/** See https://code.google.com/p/bwapi/wiki/Game#getUnitsInRectangle */
+	public List<Unit> getUnitsInRectangle(Position topLeft, Position bottomRight, int filter) {
+		findUnitsInRectangle(topLeft.getPX(), topLeft.getPY(), bottomRight.getPX(), bottomRight.getPY(), filter);
+		return readUnits(0);
+	}
+
+	/**
+	 * Answers a radius query for each of numCenters centers in one call to the
+	 * bridge, e.g. one per squad. centers holds the pixel coordinates as (x, y)
+	 * pairs. The IDs found for center i are written to ids from offsets[i] to
+	 * offsets[i + 1], so offsets needs numCenters + 1 elements.
+	 *
+	 * @return the total number of IDs; if it is larger than ids.length, the IDs
+	 *         beyond ids.length are not written
+	 * @throws IllegalArgumentException
+	 *             if centers or offsets are too short for numCenters
+	 */
+	public int getUnitIdsInRadius(int[] centers, int numCenters, int radius, int filter, int[] offsets, int[] ids) {
+		checkBatch(centers, numCenters, 2, offsets);
+		findUnitsInRadiusBatch(centers, numCenters, radius, filter);
+		return readUnitIdBatch(numCenters, offsets, ids);
+	}
+
+	/**
+	 * Answers a rectangle query for each of numRectangles rectangles in one call
+	 * to the bridge. rectangles holds the pixel coordinates as (left, top, right,
+	 * bottom) quadruples. Results are laid out as in
+	 * {@link #getUnitIdsInRadius(int[], int, int, int, int[], int[])}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if rectangles or offsets are too short for numRectangles
+	 */
+	public int getUnitIdsInRectangle(int[] rectangles, int numRectangles, int filter, int[] offsets, int[] ids) {
+		checkBatch(rectangles, numRectangles, 4, offsets);
+		findUnitsInRectangleBatch(rectangles, numRectangles, filter);
+		return readUnitIdBatch(numRectangles, offsets, ids);
+	}
+
+	/**
+	 * Checks the arrays of a batch query before they are passed to the bridge,
+	 * which reads count * stride coordinates without bounds checks
+	 */
+	private static void checkBatch(int[] coordinates, int count, int stride, int[] offsets) {
+		if (count < 0 || count > coordinates.length / stride) {
+			throw new IllegalArgumentException("Expected " + count + " queries of " + stride + " coordinates, but got "
+					+ coordinates.length + " coordinates");
+		}
+		if (offsets.length < count + 1) {
+			throw new IllegalArgumentException("offsets needs " + (count + 1) + " elements, but has " + offsets.length);
+		}
+	}
+
+	/** Copies a count and IDs from the data buffer into ids, returning the count */
+	private int readUnitIds(int index, int[] ids, int offset) {
+		IntBuffer data = this.dataBuffer;
+		int count = data.get(index++);
+		int limit = Math.min(count, ids.length - offset);
+		for (int i = 0; i < limit; i++) {
+			ids[offset + i] = data.get(index + i);
+		}
+		return count;
+	}
+
+	private List<Unit> readUnits(int index) {
+		IntBuffer data = this.dataBuffer;
+		int count = data.get(index++);
+		List<Unit> units = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Unit unit = getUnit(data.get(index + i));
+			if (unit != null) {
+				units.add(unit);
+			}
+		}
+		return units;
+	}
+
+	private int readUnitIdBatch(int numQueries, int[] offsets, int[] ids) {
+		int index = 0;
+		int total = 0;
+		for (int i = 0; i < numQueries; i++) {
+			offsets[i] = total;
+			int count = this.dataBuffer.get(index);
+			if (total < ids.length) {
+				readUnitIds(index, ids, total);
+			}
+			index += 1 + count;
+			total += count;
+		}
+		offsets[numQueries] = total;
+		return total;
+	}
+
 	/**
 	 * Returns the map.
 	 */
@@ -817,6 +1432,33 @@ public class JNIBWAPI {
 		}
 
 		this.map.initialize(regionMapData, regionData, polygons, chokePointData, baseLocationData);
+		if (this.distanceFieldsEnabled) {
+			loadDistanceFields(new File(this.BWTAdir.getPath() + File.separator + mapHash + ".jdist"));
+		}
+	}
+
+	/**
+	 * Loads the map's distance fields from the given file, or computes them and
+	 * stores them there if the file is missing or does not match the map.
+	 */
+	private void loadDistanceFields(File distanceFile) {
+		if (distanceFile.exists()) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+					new FileInputStream(distanceFile))))) {
+				if (this.map.readDistanceFields(in)) {
+					return;
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		this.map.computeDistanceFields();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+				new FileOutputStream(distanceFile))))) {
+			this.map.writeDistanceFields(out);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	/**
@@ -878,6 +1520,12 @@ public class JNIBWAPI {
 	 */
 	private void connected() {
 		try {
+			this.dataBuffer = getDataBuffer().order(ByteOrder.nativeOrder()).asIntBuffer();
+			this.eventBuffer = getEventBuffer().order(ByteOrder.nativeOrder()).asIntBuffer();
+			this.eventTextBuffer = getEventTextBuffer();
+			this.keyStateIndex = this.eventBuffer.capacity() - 2 * keyMaskWords;
+			this.commandBuffer = getCommandBuffer().order(ByteOrder.nativeOrder()).asIntBuffer();
+			this.commandResults = new CommandResults();
 			loadTypeData();
 			this.listener.connected();
 		} catch (Throwable t) {
@@ -920,34 +1568,49 @@ public class JNIBWAPI {
 				}
 			}
 
-			// get unit data
+			int maxPlayerID = 0;
+			for (Player player : this.players.values()) {
+				maxPlayerID = Math.max(maxPlayerID, player.getID());
+			}
+			this.playerRelations = new byte[maxPlayerID + 1];
+			Arrays.fill(this.playerRelations, RELATION_NEUTRAL);
+			for (Player player : this.players.values()) {
+				if (player == this.self) {
+					this.playerRelations[player.getID()] = RELATION_SELF;
+				} else if (this.allies.contains(player)) {
+					this.playerRelations[player.getID()] = RELATION_ALLIED;
+				} else if (this.enemies.contains(player)) {
+					this.playerRelations[player.getID()] = RELATION_ENEMY;
+				}
+			}
+
+			// get unit data, using the attribute groups requested before the game started
+			this.unitAttributeGroups = this.pendingUnitAttributeGroups;
+			this.unitColumns = Unit.getAttributeColumns(this.unitAttributeGroups);
+			this.snapshotBuilder = this.pendingSnapshotsEnabled ? new FrameSnapshotBuilder() : null;
+			this.latestSnapshot = null;
+			if (this.unitHistory != null) {
+				this.unitHistory.clear(this.unitAttributeGroups);
+			}
+			this.enemyMemory.clear();
 			this.units.clear();
 			this.playerUnits.clear();
 			this.alliedUnits.clear();
 			this.enemyUnits.clear();
 			this.neutralUnits.clear();
-			int[] unitData = getAllUnitsData();
-
-			for (int index = 0; index < unitData.length; index += Unit.numAttributes) {
-				int id = unitData[index];
-				Unit unit = new Unit(id, this);
-				unit.update(unitData, index);
-
-				this.units.put(id, unit);
-				if (this.self != null && unit.getPlayer() == this.self) {
-					this.playerUnits.add(unit);
-				} else if (this.allies.contains(unit.getPlayer())) {
-					this.alliedUnits.add(unit);
-				} else if (this.enemies.contains(unit.getPlayer())) {
-					this.enemyUnits.add(unit);
-				} else {
-					this.neutralUnits.add(unit);
-				}
+			this.playerUnitsByType.clear();
+			this.enemyUnitsByType.clear();
+			for (UnitView view : this.unitViews) {
+				view.clear();
 			}
+			// the bridge resets its unit records at game start, so every unit is added
+			updateFrame();
+
 			this.staticNeutralUnits.clear();
-			unitData = getStaticNeutralUnitsData();
-			for (int index = 0; index < unitData.length; index += Unit.numAttributes) {
-				int id = unitData[index];
+			IntBuffer unitData = this.dataBuffer;
+			int length = getStaticNeutralUnitsData();
+			for (int index = 0; index < length; index += Unit.numAttributes) {
+				int id = unitData.get(index);
 
 				// Ensure we don't have duplicate units
 				Unit unit = this.units.get(id);
@@ -959,7 +1622,6 @@ public class JNIBWAPI {
 				this.staticNeutralUnits.add(unit);
 			}
 
-			this.gameFrame = getFrame();
 			loadMapData();
 
 		} catch (Throwable t) {
@@ -978,66 +1640,176 @@ public class JNIBWAPI {
 	 */
 	private void gameUpdate() {
 		try {
+			// the bridge executed the commands left in the buffer at the end of the previous frame
+			if (this.commandsQueued) {
+				this.commandResults.copy(this.commandBuffer);
+				this.commandsQueued = false;
+			}
 			// update game state
-			this.gameFrame = getFrame();
-			if (!isReplay()) {
-				this.self.update(getPlayerUpdate(this.self.getID()));
-				this.self.updateResearch(getResearchStatus(this.self.getID()), getUpgradeStatus(this.self.getID()));
-			} else {
-				for (Integer playerID : this.players.keySet()) {
-					this.players.get(playerID).update(getPlayerUpdate(playerID));
-					this.players.get(playerID).updateResearch(getResearchStatus(playerID), getUpgradeStatus(playerID));
-				}
+			updateFrame();
+		} catch (Throwable t) {
+			t.printStackTrace();
+		}
+	}
+
+	/**
+	 * Decodes the frame snapshot written by a single call to the bridge, which
+	 * consists of:
+	 * <ul>
+	 * <li>the frame count</li>
+	 * <li>the number of player blocks, then for each player (only self, or every
+	 * player in replays) its ID, resources and scores (see
+	 * {@link Player#update(IntBuffer, int)}), then its tech version and the
+	 * research and upgrade types whose status changed (see
+	 * {@link Player#updateTech(IntBuffer, int)})</li>
+	 * <li>the unit delta (see {@link #updateUnits(int)})</li>
+	 * </ul>
+	 */
+	private void updateFrame() {
+		IntBuffer data = this.dataBuffer;
+		getFrameSnapshot();
+		int index = 0;
+		this.gameFrame = data.get(index++);
+		int numPlayers = data.get(index++);
+		for (int i = 0; i < numPlayers; i++) {
+			Player player = this.players.get(data.get(index++));
+			index = player.update(data, index);
+			index = player.updateTech(data, index);
+			if (this.snapshotBuilder != null) {
+				this.snapshotBuilder.applyPlayer(player);
 			}
-			// update units
-			int[] unitData = getAllUnitsData();
-			Set<Integer> deadUnits = new HashSet<>(this.units.keySet());
-			List<Unit> playerList = new LinkedList<>();
-			List<Unit> alliedList = new LinkedList<>();
-			List<Unit> enemyList = new LinkedList<>();
-			List<Unit> neutralList = new LinkedList<>();
-			for (int index = 0; index < unitData.length; index += Unit.numAttributes) {
-				int id = unitData[index];
-				deadUnits.remove(id);
+		}
+		updateUnits(index);
+	}
 
-				Unit unit = this.units.get(id);
-				if (unit == null) {
-					unit = new Unit(id, this);
-					this.units.put(id, unit);
+	/**
+	 * Applies the unit delta starting at index of the data buffer to the units and
+	 * to the snapshot if enabled, then rebuilds the cached unit lists. The delta
+	 * consists of:
+	 * <ul>
+	 * <li>the number of removed units, then the ID of each one</li>
+	 * <li>the number of added units, then the ID of each one followed by its
+	 * attributes in the subscribed groups (see {@link #setUnitAttributeGroups(int)})</li>
+	 * <li>the number of changed units, then for each one its ID, a bitmask of the
+	 * changed attributes and their new values (see
+	 * {@link Unit#updateDelta(IntBuffer, int)})</li>
+	 * </ul>
+	 * Units that did not change are not sent at all.
+	 */
+	private void updateUnits(int index) {
+		IntBuffer unitData = this.dataBuffer;
+		FrameSnapshotBuilder snapshot = this.snapshotBuilder;
+		this.removedUnits.clear();
+		this.unitChanges.clear();
+		int numRemoved = unitData.get(index++);
+		for (int i = 0; i < numRemoved; i++) {
+			int id = unitData.get(index++);
+			if (snapshot != null) {
+				snapshot.unitRemoved(id);
+			}
+			Unit unit = this.units.remove(id);
+			if (unit != null) {
+				unit.setDestroyed();
+				this.removedUnits.add(unit);
+				this.unitChanges.record(unit.getID(), UnitChanges.REMOVED);
+				if (this.unitHistory != null) {
+					this.unitHistory.unitRemoved(unit);
 				}
-
-				unit.update(unitData, index);
-
-				if (this.self != null) {
-					if (unit.getPlayer() == this.self) {
-						playerList.add(unit);
-					} else if (this.allies.contains(unit.getPlayer())) {
-						alliedList.add(unit);
-					} else if (this.enemies.contains(unit.getPlayer())) {
-						enemyList.add(unit);
-					} else {
-						neutralList.add(unit);
-					}
-				} else if (this.allies.contains(unit.getPlayer())) {
-					alliedList.add(unit);
-				} else if (this.enemies.contains(unit.getPlayer())) {
-					enemyList.add(unit);
-				} else {
-					neutralList.add(unit);
+				// forgotten again if a UnitDestroy event follows
+				if (relation(unit.getPlayerID()) == RELATION_ENEMY) {
+					this.enemyMemory.remember(unit, this.gameFrame, this.unitAttributeGroups);
 				}
 			}
+		}
+		int numAdded = unitData.get(index++);
+		for (int i = 0; i < numAdded; i++) {
+			int id = unitData.get(index);
+			if (snapshot != null) {
+				snapshot.unitAdded(unitData, index, this.unitColumns);
+			}
+			Unit unit = new Unit(id, this);
+			index = unit.updateColumns(unitData, index, this.unitColumns);
+			this.units.put(unit);
+			this.unitChanges.record(id, UnitChanges.ADDED);
+			this.enemyMemory.forget(id);
+		}
+		int numChanged = unitData.get(index++);
+		for (int i = 0; i < numChanged; i++) {
+			int id = unitData.get(index);
+			Unit unit = this.units.get(id);
+			if (unit == null) {
+				throw new IllegalStateException("Unit delta changes unit " + id + " which does not exist");
+			}
+			if (snapshot != null) {
+				snapshot.unitChanged(unitData, index);
+			}
+			index = unit.updateDelta(unitData, index);
+			this.unitChanges.record(unit.getID(), unit.getChanges());
+		}
+		if (snapshot != null) {
+			this.latestSnapshot = snapshot.publish(this.gameFrame);
+		}
+
+		// refilled from all units, as unchanged units are not in the delta. Indexed
+		// access and the relation array avoid allocating in steady state.
+		this.playerUnits.clear();
+		this.alliedUnits.clear();
+		this.enemyUnits.clear();
+		this.neutralUnits.clear();
+		this.playerUnitsByType.clear();
+		this.enemyUnitsByType.clear();
+		// completion is only known when the flags are subscribed
+		boolean hasFlags = (this.unitAttributeGroups & Unit.GROUP_FLAGS) != 0;
+		for (int i = 0; i < this.units.size(); i++) {
+			Unit unit = this.units.getPacked(i);
+			switch (relation(unit.getPlayerID())) {
+			case RELATION_SELF:
+				this.playerUnits.add(unit);
+				this.playerUnitsByType.add(unit, unit.getTypeID(), hasFlags && unit.isCompleted());
+				break;
+			case RELATION_ALLIED:
+				this.alliedUnits.add(unit);
+				break;
+			case RELATION_ENEMY:
+				this.enemyUnits.add(unit);
+				this.enemyUnitsByType.add(unit, unit.getTypeID(), hasFlags && unit.isCompleted());
+				break;
+			default:
+				this.neutralUnits.add(unit);
+				break;
+			}
+		}
+
+		if (this.unitHistory != null) {
+			this.unitHistory.record(this.gameFrame, this.units);
+		}
+		this.enemyMemory.expire(this.gameFrame);
 
-			// update the unit lists
-			this.playerUnits = playerList;
-			this.alliedUnits = alliedList;
-			this.enemyUnits = enemyList;
-			this.neutralUnits = neutralList;
-			for (Integer unitID : deadUnits) {
-				this.units.get(unitID).setDestroyed();
-				this.units.remove(unitID);
+		// after the lists above, so that view listeners see the current frame
+		if (!this.unitViews.isEmpty()) {
+			updateUnitViews();
+		}
+	}
+
+	private byte relation(int playerID) {
+		return (playerID >= 0 && playerID < this.playerRelations.length) ? this.playerRelations[playerID]
+				: RELATION_NEUTRAL;
+	}
+
+	/** Evaluates every registered unit view in a single pass over the units */
+	private void updateUnitViews() {
+		int numViews = this.unitViews.size();
+		for (int i = 0; i < this.removedUnits.size(); i++) {
+			Unit unit = this.removedUnits.get(i);
+			for (int v = 0; v < numViews; v++) {
+				this.unitViews.get(v).unitDestroyed(unit);
+			}
+		}
+		for (int i = 0; i < this.units.size(); i++) {
+			Unit unit = this.units.getPacked(i);
+			for (int v = 0; v < numViews; v++) {
+				this.unitViews.get(v).update(unit);
 			}
-		} catch (Throwable t) {
-			t.printStackTrace();
 		}
 	}
 
@@ -1055,7 +1827,29 @@ public class JNIBWAPI {
 	/**
 	 * C++ callback function.<br>
 	 *
-	 * Sends BWAPI callback events to the event listener.
+	 * Sends a batch of BWAPI events to the event listener, in the order they were
+	 * issued. The bridge normally passes all the events of a frame at once, so
+	 * MatchStart is still the first event and MatchFrame the last. Each event in
+	 * the event buffer consists of its type, two parameters, and the offset and
+	 * length of its text in the event text buffer (-1 and 0 if it has none).
+	 */
+	private void eventsOccurred(int numEvents) {
+		IntBuffer events = this.eventBuffer;
+		for (int i = 0, index = 0; i < numEvents; i++, index += eventSize) {
+			String text = null;
+			int textOffset = events.get(index + 3);
+			if (textOffset >= 0) {
+				byte[] bytes = new byte[events.get(index + 4)];
+				this.eventTextBuffer.position(textOffset);
+				this.eventTextBuffer.get(bytes);
+				text = new String(bytes, this.charset);
+			}
+			eventOccurred(events.get(index), events.get(index + 1), events.get(index + 2), text);
+		}
+	}
+
+	/**
+	 * Sends a single BWAPI event to the event listener.
 	 */
 	private void eventOccurred(int eventTypeID, int param1, int param2, String param3) {
 		try {
@@ -1069,6 +1863,7 @@ public class JNIBWAPI {
 				break;
 			case MatchFrame:
 				this.listener.matchFrame();
+				submitDrawLists();
 				break;
 			case MenuFrame:
 				// Unused?
@@ -1105,6 +1900,7 @@ public class JNIBWAPI {
 				this.listener.unitCreate(param1);
 				break;
 			case UnitDestroy:
+				this.enemyMemory.forget(param1);
 				this.listener.unitDestroy(param1);
 				break;
 			case UnitMorph:
@@ -1131,16 +1927,38 @@ public class JNIBWAPI {
 		}
 	}
 
+	/**
+	 * Returns whether the key was down at the start of the current frame, see
+	 * https://code.google.com/p/bwapi/wiki/Game#getKeyState<br>
+	 * Read from the keyboard state the bridge passes each frame, so it does not
+	 * call into the bridge.
+	 */
+	public boolean getKeyState(int keyCode) {
+		if (keyCode < 0 || keyCode >= keyMaskWords * 32) {
+			return false;
+		}
+		return (this.eventBuffer.get(this.keyStateIndex + keyCode / 32) & (1 << (keyCode % 32))) != 0;
+	}
+
 	/**
 	 * C++ callback function.<br>
 	 *
-	 * Notifies the event listener that a key was pressed.
+	 * Notifies the event listener of each key pressed this frame, in key code
+	 * order. Only called when at least one key was pressed.
 	 */
-	public void keyPressed(int keyCode) {
-		try {
-			this.listener.keyPressed(keyCode);
-		} catch (Throwable t) {
-			t.printStackTrace();
+	private void keysPressed() {
+		IntBuffer keys = this.eventBuffer;
+		for (int word = 0; word < keyMaskWords; word++) {
+			int pressed = keys.get(this.keyStateIndex + keyMaskWords + word);
+			while (pressed != 0) {
+				int bit = Integer.numberOfTrailingZeros(pressed);
+				pressed &= pressed - 1;
+				try {
+					this.listener.keyPressed(word * 32 + bit);
+				} catch (Throwable t) {
+					t.printStackTrace();
+				}
+			}
 		}
 	}
 }
@@ -0,0 +1,269 @@
+package jnibwapi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jnibwapi.Position.PosType;
+
+/**
+ * Jump Point Search over a {@link BitGrid} of walk tiles, used by
+ * {@link Map#getWalkDistance(Position, Position)}. Moves go to the 8 neighbours,
+ * and a diagonal move needs both tiles beside it to be walkable, so paths never
+ * cut corners. Instead of opening every tile, the search jumps along straight
+ * and diagonal lines and only opens the tiles where the path may turn, which
+ * makes searches over the full walk tile grid cheap. Straight jumps scan 64
+ * tiles at a time, using the grid's row bitsets and the transposed grid's for
+ * columns. The open list and scratch arrays are those of the given
+ * {@link AStarEngine}, which must only be used by one thread.
+ */
+final class JumpPointSearch {
+	private final BitGrid grid;
+	/** The grid with rows and columns swapped, for vertical jumps */
+	private final BitGrid columns;
+	private final int width;
+	private final AStarEngine engine;
+	private int endX;
+	private int endY;
+
+	JumpPointSearch(BitGrid grid, BitGrid columns, AStarEngine engine) {
+		this.grid = grid;
+		this.columns = columns;
+		this.width = grid.getWidth();
+		this.engine = engine;
+	}
+
+	/**
+	 * Returns the cost of the shortest path between the walk tiles, in units of
+	 * {@link AStarEngine#COST} per tile, or -1 if there is none. The path can then
+	 * be read with {@link #getPath(int, int)}.
+	 */
+	int search(int startX, int startY, int endX, int endY) {
+		if (!this.grid.get(startX, startY) || !this.grid.get(endX, endY)) {
+			return -1;
+		}
+		this.endX = endX;
+		this.endY = endY;
+		AStarEngine engine = this.engine;
+		int end = endX + this.width * endY;
+		engine.prepare(this.width * this.grid.getHeight());
+		engine.open(startX + this.width * startY, 0, heuristic(startX, startY), -1);
+		while (engine.hasOpen()) {
+			int node = engine.pop();
+			if (node == end) {
+				return engine.getCost(node);
+			}
+			int x = node % this.width;
+			int y = node / this.width;
+			int parent = engine.getParent(node);
+			if (parent < 0) {
+				for (int dx = -1; dx <= 1; dx++) {
+					for (int dy = -1; dy <= 1; dy++) {
+						if ((dx != 0 || dy != 0) && canMove(x, y, dx, dy)) {
+							jumpFrom(engine, node, x, y, dx, dy);
+						}
+					}
+				}
+			} else {
+				int dx = Integer.signum(x - parent % this.width);
+				int dy = Integer.signum(y - parent / this.width);
+				if (dx != 0 && dy != 0) {
+					// natural neighbours of a diagonal move
+					boolean vertical = this.grid.get(x, y + dy);
+					boolean horizontal = this.grid.get(x + dx, y);
+					if (vertical) {
+						jumpFrom(engine, node, x, y, 0, dy);
+					}
+					if (horizontal) {
+						jumpFrom(engine, node, x, y, dx, 0);
+					}
+					if (vertical && horizontal) {
+						jumpFrom(engine, node, x, y, dx, dy);
+					}
+				} else if (dx != 0) {
+					// straight ahead, plus the turns which a blocked tile behind may force
+					boolean ahead = this.grid.get(x + dx, y);
+					boolean up = this.grid.get(x, y - 1);
+					boolean down = this.grid.get(x, y + 1);
+					if (ahead) {
+						jumpFrom(engine, node, x, y, dx, 0);
+						if (up) {
+							jumpFrom(engine, node, x, y, dx, -1);
+						}
+						if (down) {
+							jumpFrom(engine, node, x, y, dx, 1);
+						}
+					}
+					if (up) {
+						jumpFrom(engine, node, x, y, 0, -1);
+					}
+					if (down) {
+						jumpFrom(engine, node, x, y, 0, 1);
+					}
+				} else {
+					boolean ahead = this.grid.get(x, y + dy);
+					boolean left = this.grid.get(x - 1, y);
+					boolean right = this.grid.get(x + 1, y);
+					if (ahead) {
+						jumpFrom(engine, node, x, y, 0, dy);
+						if (left) {
+							jumpFrom(engine, node, x, y, -1, dy);
+						}
+						if (right) {
+							jumpFrom(engine, node, x, y, 1, dy);
+						}
+					}
+					if (left) {
+						jumpFrom(engine, node, x, y, -1, 0);
+					}
+					if (right) {
+						jumpFrom(engine, node, x, y, 1, 0);
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the jump points of the path found by the last successful search with
+	 * this engine, from start to end, as walk tile positions
+	 */
+	List<Position> getPath(int startNode, int endNode) {
+		AStarEngine engine = this.engine;
+		List<Position> path = new ArrayList<>();
+		for (int node = endNode; node >= 0; node = engine.getParent(node)) {
+			path.add(new Position(node % this.width, node / this.width, PosType.WALK));
+			if (node == startNode) {
+				break;
+			}
+		}
+		for (int i = 0, j = path.size() - 1; i < j; i++, j--) {
+			path.set(i, path.set(j, path.get(i)));
+		}
+		return path;
+	}
+
+	/** Jumps from the node in the given direction, opening the jump point found if any */
+	private void jumpFrom(AStarEngine engine, int node, int x, int y, int dx, int dy) {
+		int jumpPoint = (dx != 0 && dy != 0) ? jumpDiagonal(x + dx, y + dy, dx, dy) : jumpStraight(x + dx, y + dy,
+				dx, dy);
+		if (jumpPoint < 0 || engine.isClosed(jumpPoint)) {
+			return;
+		}
+		int jx = jumpPoint % this.width;
+		int jy = jumpPoint / this.width;
+		// the jump is a straight or diagonal line, so its cost is the octile distance
+		int steps = Math.max(Math.abs(jx - x), Math.abs(jy - y));
+		int g = engine.getCost(node) + steps * ((dx != 0 && dy != 0) ? AStarEngine.COST_DIAG : AStarEngine.COST);
+		int f = g + heuristic(jx, jy);
+		if (!engine.isSeen(jumpPoint)) {
+			engine.open(jumpPoint, g, f, node);
+		} else if (g < engine.getCost(jumpPoint)) {
+			engine.improve(jumpPoint, g, f, node);
+		}
+	}
+
+	/**
+	 * Steps horizontally or vertically from (x, y) until reaching the end, a tile
+	 * with a forced neighbour, or an obstacle. Returns the tile found, or -1.
+	 */
+	private int jumpStraight(int x, int y, int dx, int dy) {
+		if (!this.grid.get(x, y)) {
+			return -1;
+		}
+		int stop;
+		boolean passesEnd;
+		if (dx != 0) {
+			stop = (dx > 0) ? this.grid.scanRight(x, y) : this.grid.scanLeft(x, y);
+			passesEnd = (y == this.endY && (this.endX - x) * dx >= 0 && (stop - this.endX) * dx >= 0);
+			if (passesEnd) {
+				return this.endX + this.width * y;
+			}
+			return this.grid.get(stop, y) ? stop + this.width * y : -1;
+		} else {
+			stop = (dy > 0) ? this.columns.scanRight(y, x) : this.columns.scanLeft(y, x);
+			passesEnd = (x == this.endX && (this.endY - y) * dy >= 0 && (stop - this.endY) * dy >= 0);
+			if (passesEnd) {
+				return x + this.width * this.endY;
+			}
+			return this.grid.get(x, stop) ? x + this.width * stop : -1;
+		}
+	}
+
+	/**
+	 * Steps diagonally from (x, y) until reaching the end, a tile from which a
+	 * straight jump finds a jump point, or an obstacle. Returns the tile found, or -1.
+	 */
+	private int jumpDiagonal(int x, int y, int dx, int dy) {
+		while (true) {
+			if (!this.grid.get(x, y)) {
+				return -1;
+			}
+			if (x == this.endX && y == this.endY) {
+				return x + this.width * y;
+			}
+			if (jumpStraight(x + dx, y, dx, 0) >= 0 || jumpStraight(x, y + dy, 0, dy) >= 0) {
+				return x + this.width * y;
+			}
+			if (!canMove(x, y, dx, dy)) {
+				return -1;
+			}
+			x += dx;
+			y += dy;
+		}
+	}
+
+	/**
+	 * Labels the connected areas of walkable tiles, so that searches between
+	 * different areas can be rejected without exploring the start's whole area.
+	 * As diagonal moves need both tiles beside them to be walkable, tiles
+	 * connected by the 8 moves are also connected horizontally and vertically.
+	 *
+	 * @return the area number of each tile, indexed as x + width * y, 0 if unwalkable
+	 */
+	static int[] labelAreas(BitGrid grid) {
+		int width = grid.getWidth();
+		int height = grid.getHeight();
+		int[] areas = new int[width * height];
+		int[] queue = new int[width * height];
+		int numAreas = 0;
+		for (int start = 0; start < areas.length; start++) {
+			if (areas[start] != 0 || !grid.get(start % width, start / width)) {
+				continue;
+			}
+			numAreas++;
+			areas[start] = numAreas;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = start;
+			while (head < tail) {
+				int node = queue[head++];
+				int x = node % width;
+				int y = node / width;
+				for (int i = 0; i < 4; i++) {
+					int nx = x + ((i == 0) ? 1 : (i == 1) ? -1 : 0);
+					int ny = y + ((i == 2) ? 1 : (i == 3) ? -1 : 0);
+					if (grid.get(nx, ny) && areas[nx + width * ny] == 0) {
+						areas[nx + width * ny] = numAreas;
+						queue[tail++] = nx + width * ny;
+					}
+				}
+			}
+		}
+		return areas;
+	}
+
+	/** Returns true if the move from (x, y) to the neighbour (x + dx, y + dy) is allowed */
+	private boolean canMove(int x, int y, int dx, int dy) {
+		if (!this.grid.get(x + dx, y + dy)) {
+			return false;
+		}
+		return dx == 0 || dy == 0 || (this.grid.get(x + dx, y) && this.grid.get(x, y + dy));
+	}
+
+	private int heuristic(int x, int y) {
+		int dx = Math.abs(x - this.endX);
+		int dy = Math.abs(y - this.endY);
+		return Math.abs(dx - dy) * AStarEngine.COST + Math.min(dx, dy) * AStarEngine.COST_DIAG;
+	}
+}
@@ -1,13 +1,13 @@
 package jnibwapi;
 
-import java.util.Arrays;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import jnibwapi.Position.PosType;
 import jnibwapi.types.UnitType;
@@ -20,13 +20,33 @@ public class Map {
 	public static final int TILE_SIZE = 32;
 
 	private final Position size;
+	/** Size in build tiles */
+	private final int width;
+	private final int height;
 	private final String name;
 	private final String fileName;
 	private final String hash;
-	private final int[] heightMap;
-	private final boolean[] buildable;
-	private final boolean[] walkable;
-	/** Walkability of build tiles */
+	/** Ground height of each build tile */
+	private final byte[] heightMap;
+	/** Buildability of build tiles as a bitset */
+	private final BitGrid buildGrid;
+	/** Walkability of walk tiles as a bitset, and transposed, for {@link JumpPointSearch} */
+	private final BitGrid walkGrid;
+	private final BitGrid walkGridColumns;
+	/** Connected area of each walk tile, so that searches between areas are rejected at once */
+	private final int[] walkAreas;
+	/**
+	 * Each thread's scratch for walk tile searches, kept apart from the build tile
+	 * {@link AStarEngine} so that it does not stay sized for the walk tile grid
+	 */
+	private final ThreadLocal<AStarEngine> walkSearchEngines = new ThreadLocal<AStarEngine>() {
+		@Override
+		protected AStarEngine initialValue() {
+			return new AStarEngine();
+		}
+	};
+	/** Walkability of build tiles as a bitset, and unpacked for {@link AStarEngine} */
+	private final BitGrid lowResWalkGrid;
 	private final boolean[] lowResWalkable;
 
 	// The following are set in initialize() method
@@ -36,36 +56,34 @@ public class Map {
 	private List<ChokePoint> chokePoints = null;
 	private List<BaseLocation> baseLocations = null;
 	private HashMap<Integer, Region> idToRegion = null;
+	private HierarchicalPathfinder hierarchicalPathfinder = null;
+	// Set by computeDistanceFields() or readDistanceFields()
+	private HashMap<BaseLocation, DistanceField> baseLocationDistances = null;
+	private HashMap<ChokePoint, DistanceField> chokePointDistances = null;
 
 	public Map(int width, int height, String name, String fileName, String hash, int[] heightMap, int[] buildable,
 			int[] walkable) {
 		this.size = new Position(width, height, PosType.BUILD);
+		this.width = width;
+		this.height = height;
 		this.name = name;
 		this.fileName = fileName;
 		this.hash = hash;
 		assert (heightMap != null && heightMap.length == this.size.getBX() * this.size.getBY());
 		assert (buildable != null && buildable.length == this.size.getBX() * this.size.getBY());
 		assert (walkable != null && walkable.length == this.size.getWX() * this.size.getWY());
-		this.heightMap = heightMap;
-		this.buildable = new boolean[buildable.length];
-		this.walkable = new boolean[walkable.length];
-
-		for (int i = 0; i < buildable.length; i++) {
-			this.buildable[i] = (buildable[i] == 1);
-		}
-
-		for (int i = 0; i < walkable.length; i++) {
-			this.walkable[i] = (walkable[i] == 1);
-		}
-
-		// Fill lowResWalkable for A* search
-		this.lowResWalkable = new boolean[width * height];
-		Arrays.fill(this.lowResWalkable, true);
-		for (int wx = 0; wx < this.size.getWX(); wx++) {
-			for (int wy = 0; wy < this.size.getWY(); wy++) {
-				this.lowResWalkable[wx / 4 + width * (wy / 4)] &= isWalkable(new Position(wx, wy, PosType.WALK));
-			}
+		this.heightMap = new byte[heightMap.length];
+		for (int i = 0; i < heightMap.length; i++) {
+			this.heightMap[i] = (byte) heightMap[i];
 		}
+		this.buildGrid = BitGrid.fromInts(buildable, width, height);
+		this.walkGrid = BitGrid.fromInts(walkable, width * 4, height * 4);
+		this.walkGridColumns = this.walkGrid.transpose();
+		this.walkAreas = JumpPointSearch.labelAreas(this.walkGrid);
+
+		// A build tile is walkable if all 16 of its walk tiles are
+		this.lowResWalkGrid = this.walkGrid.shrink(4);
+		this.lowResWalkable = this.lowResWalkGrid.toBooleans();
 	}
 
 	/** Initialise the map with regions and base locations */
@@ -114,6 +132,10 @@ public class Map {
 			chokePoint.getSecondRegion().addChokePoint(chokePoint);
 			chokePoint.getSecondRegion().addConnectedRegion(chokePoint.getFirstRegion());
 		}
+
+		// built here rather than on the first query, so that no frame pays for it
+		this.hierarchicalPathfinder = new HierarchicalPathfinder(this.lowResWalkable, this.width, this.height,
+				this.regionMap, this.regions, this.chokePoints);
 	}
 
 	/** Get the map size as a Position object */
@@ -145,20 +167,29 @@ public class Map {
 	}
 
 	public int getGroundHeight(Position p) {
-		if (p.isValid()) {
+		if (p.isValid(this)) {
 			return this.heightMap[getBuildTileArrayIndex(p)];
 		} else {
 			return 0;
 		}
 	}
 
+	/** Ground height of the given build tile, or 0 if it is not on the map */
+	public int getGroundHeight(int bx, int by) {
+		if (isValidBuildTile(bx, by)) {
+			return this.heightMap[bx + this.width * by];
+		} else {
+			return 0;
+		}
+	}
+
 	/**
 	 * Works only after initialize(). Returns null if the specified position is
 	 * invalid. Build tile accuracy (so may not precisely agree with region
 	 * polygons).
 	 */
 	public Region getRegion(Position p) {
-		if (p.isValid()) {
+		if (p.isValid(this)) {
 			return this.idToRegion.get(this.regionMap[getBuildTileArrayIndex(p)]);
 		} else {
 			return null;
@@ -166,28 +197,94 @@ public class Map {
 	}
 
 	public boolean isBuildable(Position p) {
-		if (p.isValid()) {
-			return this.buildable[getBuildTileArrayIndex(p)];
-		} else {
-			return false;
-		}
+		return p.isValid(this) && isBuildable(p.getBX(), p.getBY());
+	}
+
+	/** Primitive overload of {@link #isBuildable(Position)} for a build tile */
+	public boolean isBuildable(int bx, int by) {
+		return this.buildGrid.get(bx, by);
+	}
+
+	/**
+	 * Checks whether every build tile of a tileWidth x tileHeight footprint, with
+	 * its top left corner at the given build tile, is buildable. Ignores units.
+	 */
+	public boolean isBuildable(int bx, int by, int tileWidth, int tileHeight) {
+		return this.buildGrid.isSet(bx, by, tileWidth, tileHeight);
+	}
+
+	/**
+	 * Checks whether the footprint of a building of the given type, with its top
+	 * left corner at the given build tile, is buildable. Ignores units, creep and
+	 * power.
+	 */
+	public boolean isBuildable(Position topLeft, UnitType type) {
+		return isBuildable(topLeft.getBX(), topLeft.getBY(), type.getTileWidth(), type.getTileHeight());
+	}
+
+	/** Number of buildable build tiles in a rectangle, ignoring the part of it off the map */
+	public int countBuildable(int bx, int by, int tileWidth, int tileHeight) {
+		return this.buildGrid.count(bx, by, tileWidth, tileHeight);
+	}
+
+	/**
+	 * Number of consecutive buildable build tiles in the row starting at the given
+	 * build tile and moving right, 0 if it is not buildable
+	 */
+	public int getBuildableSpan(int bx, int by) {
+		return this.buildGrid.nextClear(bx, by) - bx;
 	}
 
 	public boolean isWalkable(Position p) {
-		if (p.isValid()) {
-			return this.walkable[p.getWX() + this.size.getWX() * p.getWY()];
-		} else {
-			return false;
-		}
+		return p.isValid(this) && isWalkable(p.getWX(), p.getWY());
+	}
+
+	/** Primitive overload of {@link #isWalkable(Position)} for a walk tile */
+	public boolean isWalkable(int wx, int wy) {
+		return this.walkGrid.get(wx, wy);
+	}
+
+	/**
+	 * Checks whether every walk tile of a walkWidth x walkHeight rectangle, with
+	 * its top left corner at the given walk tile, is walkable
+	 */
+	public boolean isWalkable(int wx, int wy, int walkWidth, int walkHeight) {
+		return this.walkGrid.isSet(wx, wy, walkWidth, walkHeight);
+	}
+
+	/** Number of walkable walk tiles in a rectangle, ignoring the part of it off the map */
+	public int countWalkable(int wx, int wy, int walkWidth, int walkHeight) {
+		return this.walkGrid.count(wx, wy, walkWidth, walkHeight);
+	}
+
+	/**
+	 * Number of consecutive walkable walk tiles in the row starting at the given
+	 * walk tile and moving right, 0 if it is not walkable
+	 */
+	public int getWalkableSpan(int wx, int wy) {
+		return this.walkGrid.nextClear(wx, wy) - wx;
 	}
 
 	/** Checks whether all 16 walk tiles in a build tile are walkable */
 	public boolean isLowResWalkable(Position p) {
-		if (p.isValid()) {
-			return this.lowResWalkable[getBuildTileArrayIndex(p)];
-		} else {
-			return false;
-		}
+		return p.isValid(this) && isLowResWalkable(p.getBX(), p.getBY());
+	}
+
+	/** Primitive overload of {@link #isLowResWalkable(Position)} for a build tile */
+	public boolean isLowResWalkable(int bx, int by) {
+		return this.lowResWalkGrid.get(bx, by);
+	}
+
+	/**
+	 * Checks whether every build tile of a tileWidth x tileHeight rectangle, with
+	 * its top left corner at the given build tile, is low resolution walkable
+	 */
+	public boolean isLowResWalkable(int bx, int by, int tileWidth, int tileHeight) {
+		return this.lowResWalkGrid.isSet(bx, by, tileWidth, tileHeight);
+	}
+
+	private boolean isValidBuildTile(int bx, int by) {
+		return bx >= 0 && by >= 0 && bx < this.width && by < this.height;
 	}
 
 	/** Works only after initialize() */
@@ -221,6 +318,120 @@ public class Map {
 		return startLocations;
 	}
 
+	/** Returns true if distance fields were computed or loaded for this map */
+	public boolean hasDistanceFields() {
+		return this.baseLocationDistances != null;
+	}
+
+	/**
+	 * Returns the precomputed ground distances from the base location to every
+	 * build tile, or null if distance fields are not available (see
+	 * {@link JNIBWAPI#setDistanceFieldsEnabled(boolean)}).
+	 */
+	public DistanceField getDistanceField(BaseLocation baseLocation) {
+		return (this.baseLocationDistances == null) ? null : this.baseLocationDistances.get(baseLocation);
+	}
+
+	/**
+	 * Returns the precomputed ground distances from the centre of the choke point
+	 * to every build tile, or null if distance fields are not available.
+	 */
+	public DistanceField getDistanceField(ChokePoint chokePoint) {
+		return (this.chokePointDistances == null) ? null : this.chokePointDistances.get(chokePoint);
+	}
+
+	/**
+	 * Computes the distance fields from every base location and choke point. Works
+	 * only after initialize().
+	 */
+	protected void computeDistanceFields() {
+		this.baseLocationDistances = new HashMap<>();
+		for (BaseLocation baseLocation : this.baseLocations) {
+			Position origin = baseLocation.getPosition();
+			this.baseLocationDistances.put(baseLocation, computeDistanceField(origin.getBX(), origin.getBY()));
+		}
+		this.chokePointDistances = new HashMap<>();
+		for (ChokePoint chokePoint : this.chokePoints) {
+			Position origin = chokePoint.getCenter();
+			this.chokePointDistances.put(chokePoint, computeDistanceField(origin.getBX(), origin.getBY()));
+		}
+	}
+
+	private DistanceField computeDistanceField(int originX, int originY) {
+		int[] costs = new int[this.width * this.height];
+		AStarEngine.get().fill(this.lowResWalkable, this.width, this.height, originX + this.width * originY, costs);
+		return new DistanceField(originX, originY, this.width, this.height, costs);
+	}
+
+	/**
+	 * Writes the distance fields, base locations first then choke points, in the
+	 * order of {@link #getBaseLocations()} and {@link #getChokePoints()}.
+	 */
+	protected void writeDistanceFields(DataOutputStream out) throws IOException {
+		out.writeInt(this.width);
+		out.writeInt(this.height);
+		out.writeInt(this.baseLocations.size());
+		out.writeInt(this.chokePoints.size());
+		for (BaseLocation baseLocation : this.baseLocations) {
+			writeDistanceField(out, this.baseLocationDistances.get(baseLocation));
+		}
+		for (ChokePoint chokePoint : this.chokePoints) {
+			writeDistanceField(out, this.chokePointDistances.get(chokePoint));
+		}
+	}
+
+	private static void writeDistanceField(DataOutputStream out, DistanceField field) throws IOException {
+		out.writeInt(field.getOriginX());
+		out.writeInt(field.getOriginY());
+		for (int cost : field.getCosts()) {
+			out.writeInt(cost);
+		}
+	}
+
+	/**
+	 * Reads distance fields written by {@link #writeDistanceFields(DataOutputStream)}.
+	 * Returns false, leaving the fields unset, if they do not match this map's size
+	 * and landmarks. Works only after initialize().
+	 */
+	protected boolean readDistanceFields(DataInputStream in) throws IOException {
+		if (in.readInt() != this.width || in.readInt() != this.height || in.readInt() != this.baseLocations.size()
+				|| in.readInt() != this.chokePoints.size()) {
+			return false;
+		}
+		HashMap<BaseLocation, DistanceField> baseDistances = new HashMap<>();
+		for (BaseLocation baseLocation : this.baseLocations) {
+			Position origin = baseLocation.getPosition();
+			DistanceField field = readDistanceField(in, origin.getBX(), origin.getBY());
+			if (field == null) {
+				return false;
+			}
+			baseDistances.put(baseLocation, field);
+		}
+		HashMap<ChokePoint, DistanceField> chokeDistances = new HashMap<>();
+		for (ChokePoint chokePoint : this.chokePoints) {
+			Position origin = chokePoint.getCenter();
+			DistanceField field = readDistanceField(in, origin.getBX(), origin.getBY());
+			if (field == null) {
+				return false;
+			}
+			chokeDistances.put(chokePoint, field);
+		}
+		this.baseLocationDistances = baseDistances;
+		this.chokePointDistances = chokeDistances;
+		return true;
+	}
+
+	private DistanceField readDistanceField(DataInputStream in, int originX, int originY) throws IOException {
+		if (in.readInt() != originX || in.readInt() != originY) {
+			return null;
+		}
+		int[] costs = new int[this.width * this.height];
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] = in.readInt();
+		}
+		return new DistanceField(originX, originY, this.width, this.height, costs);
+	}
+
 	/**
 	 * Find the shortest walkable distance, in pixels, between two tile
 	 * positions or -1 if not reachable. Works only after initialize(). Ported
@@ -233,6 +444,140 @@ public class Map {
 		return aStarSearchDistance(start, end);
 	}
 
+	/**
+	 * Estimate the walkable distance, in pixels, between two tile positions or -1
+	 * if not reachable, by routing through the choke points between their
+	 * regions. Tiles in the same region use the exact search of
+	 * {@link #getGroundDistance(Position, Position)}. Otherwise the distances
+	 * within each region to its choke points are precomputed by initialize(), so
+	 * a query takes microseconds, but the route is assumed to pass near the centre
+	 * of each choke point, so the result may be slightly longer than the exact
+	 * distance. Works only after initialize().
+	 */
+	public double getHierarchicalDistance(Position start, Position end) {
+		if (!isConnected(start, end)) {
+			return -1;
+		}
+		if (getRegion(start) == getRegion(end)) {
+			return aStarSearchDistance(start, end);
+		}
+		int cost = this.hierarchicalPathfinder.search(getBuildTileArrayIndex(start), getBuildTileArrayIndex(end),
+				null);
+		if (cost < 0) {
+			// connected, but a tile cannot reach its region's choke points within the region
+			return aStarSearchDistance(start, end);
+		}
+		return cost * TILE_SIZE / (double) AStarEngine.COST;
+	}
+
+	/**
+	 * Find the route between two tile positions used by
+	 * {@link #getHierarchicalDistance(Position, Position)}, as build tile
+	 * positions: the start, a walkable tile at each choke point passed through,
+	 * then the end. Returns an empty list if not reachable. Use
+	 * {@link #refinePath(List)} to get the tiles between the waypoints.
+	 */
+	public List<Position> getHierarchicalPath(Position start, Position end) {
+		List<Position> path = new ArrayList<>();
+		if (!isConnected(start, end)) {
+			return path;
+		}
+		// without a route through the choke points, which can happen for connected tiles that cannot reach
+		// their region's choke points within the region, refinePath() searches from start to end directly
+		List<Integer> route = new ArrayList<>();
+		if (getRegion(start) != getRegion(end)) {
+			this.hierarchicalPathfinder.search(getBuildTileArrayIndex(start), getBuildTileArrayIndex(end), route);
+		}
+		path.add(new Position(start.getBX(), start.getBY(), PosType.BUILD));
+		for (int chokePoint : route) {
+			path.add(this.hierarchicalPathfinder.getAnchor(chokePoint));
+		}
+		path.add(new Position(end.getBX(), end.getBY(), PosType.BUILD));
+		return path;
+	}
+
+	/**
+	 * Expands waypoints, such as those from
+	 * {@link #getHierarchicalPath(Position, Position)}, into the build tiles of
+	 * the shortest path between each consecutive pair, including the first
+	 * waypoint. Returns an empty list if any waypoint is not reachable from the
+	 * previous one. Only searches between consecutive waypoints, so the cost
+	 * depends on their spacing rather than on the length of the whole path.
+	 */
+	public List<Position> refinePath(List<Position> waypoints) {
+		List<Position> tiles = new ArrayList<>();
+		if (waypoints.isEmpty()) {
+			return tiles;
+		}
+		tiles.add(new Position(waypoints.get(0).getBX(), waypoints.get(0).getBY(), PosType.BUILD));
+		for (int i = 1; i < waypoints.size(); i++) {
+			int from = getBuildTileArrayIndex(waypoints.get(i - 1));
+			int to = getBuildTileArrayIndex(waypoints.get(i));
+			if (from == to) {
+				continue;
+			}
+			List<Position> section = this.hierarchicalPathfinder.refine(from, to);
+			if (section == null) {
+				return new ArrayList<>();
+			}
+			tiles.addAll(section);
+		}
+		return tiles;
+	}
+
+	/**
+	 * Find the shortest walkable distance, in pixels, between two walk tile
+	 * positions or -1 if not reachable, using every walk tile rather than the
+	 * build tiles of {@link #getGroundDistance(Position, Position)}. Both tiles
+	 * must be walkable, and paths do not cut the corners of unwalkable tiles.
+	 * Ignores buildings.
+	 */
+	public double getWalkDistance(Position start, Position end) {
+		return getWalkDistance(start.getWX(), start.getWY(), end.getWX(), end.getWY());
+	}
+
+	/** Primitive overload of {@link #getWalkDistance(Position, Position)} for walk tiles */
+	public double getWalkDistance(int startWX, int startWY, int endWX, int endWY) {
+		if (!isWalkConnected(startWX, startWY, endWX, endWY)) {
+			return -1;
+		}
+		int cost = newWalkSearch().search(startWX, startWY, endWX, endWY);
+		if (cost < 0) {
+			return -1;
+		}
+		return cost * PosType.WALK.scale / (double) AStarEngine.COST;
+	}
+
+	/**
+	 * Find the shortest walkable path between two walk tile positions, as in
+	 * {@link #getWalkDistance(Position, Position)}. Returns the waypoints where
+	 * the path turns, as walk tile positions, including the start and end, or an
+	 * empty list if not reachable. The path runs in straight or diagonal lines
+	 * between waypoints.
+	 */
+	public List<Position> getWalkPath(Position start, Position end) {
+		JumpPointSearch search = newWalkSearch();
+		if (!isWalkConnected(start.getWX(), start.getWY(), end.getWX(), end.getWY())
+				|| search.search(start.getWX(), start.getWY(), end.getWX(), end.getWY()) < 0) {
+			return new ArrayList<>();
+		}
+		int walkWidth = this.width * 4;
+		return search.getPath(start.getWX() + walkWidth * start.getWY(), end.getWX() + walkWidth * end.getWY());
+	}
+
+	private JumpPointSearch newWalkSearch() {
+		return new JumpPointSearch(this.walkGrid, this.walkGridColumns, this.walkSearchEngines.get());
+	}
+
+	/** Returns true if both walk tiles are walkable and in the same connected area */
+	private boolean isWalkConnected(int startWX, int startWY, int endWX, int endWY) {
+		if (!isWalkable(startWX, startWY) || !isWalkable(endWX, endWY)) {
+			return false;
+		}
+		int walkWidth = this.width * 4;
+		return this.walkAreas[startWX + walkWidth * startWY] == this.walkAreas[endWX + walkWidth * endWY];
+	}
+
 	/**
 	 * Based on map connectedness only. Ignores buildings. Works only after
 	 * initialize(). Ported from BWTA.
@@ -248,90 +593,18 @@ public class Map {
 	}
 
 	/**
-	 * Performs an A* search. Intended to be called from
-	 * {@link #getGroundDistance(int, int, int, int)}. Ported from BWTA.
+	 * Performs an A* search over the low resolution walkability grid. Intended to
+	 * be called from {@link #getGroundDistance(Position, Position)}. Ported from
+	 * BWTA.
 	 */
 	private double aStarSearchDistance(Position start, Position end) {
-		// Distance of 10 per build tile, or sqrt(10^2 + 10^2) ~= 14 diagonally
-		final int mvmtCost = 10;
-		final int mvmtCostDiag = 14;
-		PriorityQueue<AStarTile> openTiles = new PriorityQueue<>(); // min
-																	// heap
-		// Map from tile to distance
-		HashMap<Position, Integer> gmap = new HashMap<>();
-		HashSet<Position> closedTiles = new HashSet<>();
-		openTiles.add(new AStarTile(start, 0));
-		gmap.put(start, 0);
-		while (!openTiles.isEmpty()) {
-			Position p = openTiles.poll().tilePos;
-			if (p.equals(end)) {
-				return gmap.get(p) * TILE_SIZE / (double) mvmtCost;
-			}
-			int gvalue = gmap.get(p);
-			closedTiles.add(p);
-			// Explore the neighbours of p
-			int bx = p.getBX();
-			int by = p.getBY();
-			int minx = Math.max(bx - 1, 0);
-			int maxx = Math.min(bx + 1, this.size.getBX() - 1);
-			int miny = Math.max(by - 1, 0);
-			int maxy = Math.min(by + 1, this.size.getBY() - 1);
-			for (int x = minx; x <= maxx; x++) {
-				for (int y = miny; y <= maxy; y++) {
-					Position t = new Position(x, y, PosType.BUILD);
-					if (!isLowResWalkable(t)) {
-						continue;
-					}
-					if (bx != x && by != y && !isLowResWalkable(new Position(bx, y, PosType.BUILD))
-							&& !isLowResWalkable(new Position(x, by, PosType.BUILD))) {
-						continue; // Not diagonally accessible
-					}
-					if (closedTiles.contains(t)) {
-						continue;
-					}
-
-					int g = gvalue + mvmtCost;
-					if (x != bx && y != by) {
-						g = gvalue + mvmtCostDiag;
-					}
-					int dx = Math.abs(x - end.getBX());
-					int dy = Math.abs(y - end.getBY());
-					// Heuristic for remaining distance:
-					// min(dx, dy) is the minimum diagonal distance, so costs
-					// mvmtCostDiag
-					// abs(dx - dy) is the rest of the distance, so costs
-					// mvmtCost
-					int h = Math.abs(dx - dy) * mvmtCost + Math.min(dx, dy) * mvmtCostDiag;
-					int f = g + h;
-					if (!gmap.containsKey(t) || gmap.get(t) > g) {
-						gmap.put(t, g);
-						for (Iterator<AStarTile> it = openTiles.iterator(); it.hasNext();) {
-							if (it.next().tilePos.equals(t)) {
-								it.remove();
-							}
-						}
-						openTiles.add(new AStarTile(t, f));
-					}
-				}
-			}
-		}
-		// Not found
-		return -1;
-	}
-
-	private static class AStarTile implements Comparable<AStarTile> {
-		Position tilePos;
-		int distPlusCost;
-
-		public AStarTile(Position tile, int distance) {
-			this.tilePos = tile;
-			this.distPlusCost = distance;
-		}
-
-		@Override
-		public int compareTo(AStarTile o) {
-			return Integer.compare(this.distPlusCost, o.distPlusCost);
+		int cost = AStarEngine.get().search(this.lowResWalkable, this.width, this.height,
+				start.getBX() + this.width * start.getBY(), end.getBX() + this.width * end.getBY());
+		if (cost < 0) {
+			// Not found
+			return -1;
 		}
+		return cost * TILE_SIZE / (double) AStarEngine.COST;
 	}
 
 	/**
@@ -339,18 +612,26 @@ public class Map {
 	 * BWAPI's ExampleAIClient
 	 */
 	public void drawTerrainData(JNIBWAPI bwapi) {
+		drawTerrainData(bwapi, bwapi.getDrawList());
+	}
+
+	/**
+	 * Records the terrain data into a draw list, e.g. a persistent layer from
+	 * {@link JNIBWAPI#createDrawLayer()} so it is only recorded once.
+	 */
+	public void drawTerrainData(JNIBWAPI bwapi, DrawList drawList) {
 		// iterate through all the base locations and draw their outlines
 		for (BaseLocation bl : bwapi.getMap().getBaseLocations()) {
 			Position p = bl.getPosition();
 
 			// draw outline of base location
 			Position otherCorner = p.translated(new Position(4, 3, PosType.BUILD));
-			bwapi.drawBox(p, otherCorner, BWColor.Blue, false, false);
+			drawList.drawBox(p, otherCorner, BWColor.Blue, false, false);
 
 			// if this is an island expansion, draw a yellow circle around the
 			// base location
 			if (bl.isIsland()) {
-				bwapi.drawCircle(p.translated(new Position(2, 1, PosType.BUILD)), 80, BWColor.Yellow, false, false);
+				drawList.drawCircle(p.translated(new Position(2, 1, PosType.BUILD)), 80, BWColor.Yellow, false, false);
 			}
 
 			// draw a circle at each mineral patch and a box at each vespene
@@ -360,10 +641,10 @@ public class Map {
 				if (ut.isResourceContainer()) {
 					if (ut.isMineralField()) {
 						// Minerals
-						bwapi.drawCircle(u.getPosition(), 30, BWColor.Cyan, false, false);
+						drawList.drawCircle(u.getPosition(), 30, BWColor.Cyan, false, false);
 					} else {
 						// Geysers
-						bwapi.drawBox(u.getTopLeft(), u.getBottomRight(), BWColor.Orange, false, false);
+						drawList.drawBox(u.getTopLeft(), u.getBottomRight(), BWColor.Orange, false, false);
 					}
 				}
 			}
@@ -376,7 +657,7 @@ public class Map {
 			for (int i = 0; i < polygon.length; i++) {
 				Position point1 = polygon[i];
 				Position point2 = polygon[(i + 1) % polygon.length];
-				bwapi.drawLine(point1, point2, BWColor.Green, false);
+				drawList.drawLine(point1, point2, BWColor.Green, false);
 			}
 		}
 
@@ -384,7 +665,7 @@ public class Map {
 		for (ChokePoint cp : getChokePoints()) {
 			Position point1 = cp.getFirstSide();
 			Position point2 = cp.getSecondSide();
-			bwapi.drawLine(point1, point2, BWColor.Red, false);
+			drawList.drawLine(point1, point2, BWColor.Red, false);
 		}
 	}
 }
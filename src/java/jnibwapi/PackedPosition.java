@@ -0,0 +1,86 @@
+package jnibwapi;
+
+/**
+ * Static helpers for coordinates packed into primitives, for hot loops which
+ * should not allocate a {@link Position} per step. An int holds two signed 16
+ * bit coordinates, enough for pixel positions on the largest maps; a long holds
+ * two full ints. The coordinates are in whatever scale the caller uses.
+ *
+ * <pre>
+ * int p = PackedPosition.pack(unit.getX(), unit.getY());
+ * int x = PackedPosition.getX(p);
+ * </pre>
+ */
+public final class PackedPosition {
+	private PackedPosition() {
+	}
+
+	public static int pack(int x, int y) {
+		return (y << 16) | (x & 0xFFFF);
+	}
+
+	public static int getX(int packed) {
+		return (short) packed;
+	}
+
+	public static int getY(int packed) {
+		return packed >> 16;
+	}
+
+	public static long packLong(int x, int y) {
+		return ((long) y << 32) | (x & 0xFFFFFFFFL);
+	}
+
+	public static int getX(long packed) {
+		return (int) packed;
+	}
+
+	public static int getY(long packed) {
+		return (int) (packed >> 32);
+	}
+
+	/** Packs the pixel coordinates of a position */
+	public static int pack(Position p) {
+		return pack(p.getPX(), p.getPY());
+	}
+
+	/** Returns a new Position at the packed pixel coordinates */
+	public static Position toPosition(int packed) {
+		return new Position(getX(packed), getY(packed));
+	}
+
+	public static double getDistance(int x1, int y1, int x2, int y2) {
+		return Math.sqrt(getDistanceSquared(x1, y1, x2, y2));
+	}
+
+	public static int getDistanceSquared(int x1, int y1, int x2, int y2) {
+		int dx = x1 - x2;
+		int dy = y1 - y2;
+		return dx * dx + dy * dy;
+	}
+
+	public static double getDistance(int packed1, int packed2) {
+		return getDistance(getX(packed1), getY(packed1), getX(packed2), getY(packed2));
+	}
+
+	/**
+	 * Starcraft's approximated distance function, see
+	 * {@link Position#getApproxPDistance(Position)}.
+	 */
+	public static int getApproxDistance(int x1, int y1, int x2, int y2) {
+		int min = Math.abs(x1 - x2);
+		int max = Math.abs(y1 - y2);
+		if (max < min) {
+			int temp = max;
+			max = min;
+			min = temp;
+		}
+
+		if (min < (max >> 2)) {
+			return max;
+		}
+
+		int minCalc = (3 * min) >> 3;
+		return ((minCalc >> 5) + minCalc + max - (max >> 4) - (max >> 6));
+	}
+}
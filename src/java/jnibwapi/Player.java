@@ -1,5 +1,6 @@
 package jnibwapi;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -48,6 +49,8 @@ public class Player {
 	private final boolean[] researched;
 	private final boolean[] upgrading;
 	private final int[] upgradeLevel;
+	private int techVersion = 0;
+	private final List<PlayerTechListener> techListeners = new ArrayList<>();
 
 	public Player(int[] data, int index, String name) {
 		this.ID = data[index++];
@@ -77,35 +80,105 @@ public class Player {
 		this.upgradeLevel = new int[highestIDUpgradeType + 1];
 	}
 
-	public void update(int[] data) {
-		int index = 0;
-		this.minerals = data[index++];
-		this.gas = data[index++];
-		this.supplyUsed = data[index++];
-		this.supplyTotal = data[index++];
-		this.cumulativeMinerals = data[index++];
-		this.cumulativeGas = data[index++];
-		this.unitScore = data[index++];
-		this.killScore = data[index++];
-		this.buildingScore = data[index++];
-		this.razingScore = data[index++];
+	/**
+	 * Reads the resources and scores starting at index and returns the index after them.
+	 */
+	public int update(IntBuffer data, int index) {
+		this.minerals = data.get(index++);
+		this.gas = data.get(index++);
+		this.supplyUsed = data.get(index++);
+		this.supplyTotal = data.get(index++);
+		this.cumulativeMinerals = data.get(index++);
+		this.cumulativeGas = data.get(index++);
+		this.unitScore = data.get(index++);
+		this.killScore = data.get(index++);
+		this.buildingScore = data.get(index++);
+		this.razingScore = data.get(index++);
+		return index;
+	}
+
+	/**
+	 * Reads the tech version followed by the research and upgrade changes starting
+	 * at index, and returns the index after them. The bridge only sends the
+	 * research and upgrade types whose status changed since the previous frame.
+	 */
+	public int updateTech(IntBuffer data, int index) {
+		this.techVersion = data.get(index++);
+		index = updateResearch(data, index);
+		index = updateUpgrades(data, index);
+		return index;
 	}
 
-	public void updateResearch(int[] techData, int[] upgradeData) {
-		for (int i = 0; i < techData.length; i += 3) {
-			int techTypeID = techData[i];
+	/**
+	 * Reads a count followed by (techTypeID, researched, researching) triples
+	 * starting at index and returns the index after them.
+	 */
+	public int updateResearch(IntBuffer techData, int index) {
+		int count = techData.get(index++);
+		for (int i = 0; i < count; i++, index += 3) {
+			int techTypeID = techData.get(index);
 			if (techTypeID < this.researched.length) { // HACK FIX
-				this.researched[techTypeID] = (techData[i + 1] == 1);
-				this.researching[techTypeID] = (techData[i + 2] == 1);
+				boolean wasResearching = this.researching[techTypeID];
+				this.researched[techTypeID] = (techData.get(index + 1) == 1);
+				this.researching[techTypeID] = (techData.get(index + 2) == 1);
+				if (!this.techListeners.isEmpty() && wasResearching != this.researching[techTypeID]) {
+					TechType tech = TechTypes.getTechType(techTypeID);
+					for (PlayerTechListener listener : this.techListeners) {
+						if (this.researching[techTypeID]) {
+							listener.researchStarted(this, tech);
+						} else if (this.researched[techTypeID]) {
+							listener.researchFinished(this, tech);
+						} else {
+							listener.researchCancelled(this, tech);
+						}
+					}
+				}
 			}
 		}
-		for (int i = 0; i < upgradeData.length; i += 3) {
-			int upgradeTypeID = upgradeData[i];
+		return index;
+	}
+
+	/**
+	 * Reads a count followed by (upgradeTypeID, level, upgrading) triples starting
+	 * at index and returns the index after them.
+	 */
+	public int updateUpgrades(IntBuffer upgradeData, int index) {
+		int count = upgradeData.get(index++);
+		for (int i = 0; i < count; i++, index += 3) {
+			int upgradeTypeID = upgradeData.get(index);
 			if (upgradeTypeID < this.upgradeLevel.length) { // HACK FIX
-				this.upgradeLevel[upgradeTypeID] = upgradeData[i + 1];
-				this.upgrading[upgradeTypeID] = (upgradeData[i + 2] == 1);
+				int previousLevel = this.upgradeLevel[upgradeTypeID];
+				this.upgradeLevel[upgradeTypeID] = upgradeData.get(index + 1);
+				this.upgrading[upgradeTypeID] = (upgradeData.get(index + 2) == 1);
+				if (!this.techListeners.isEmpty() && previousLevel != this.upgradeLevel[upgradeTypeID]) {
+					UpgradeType upgrade = UpgradeTypes.getUpgradeType(upgradeTypeID);
+					for (PlayerTechListener listener : this.techListeners) {
+						listener.upgradeLevelChanged(this, upgrade, previousLevel, this.upgradeLevel[upgradeTypeID]);
+					}
+				}
 			}
 		}
+		return index;
+	}
+
+	/**
+	 * Registers a listener to be notified when this player starts, finishes or
+	 * cancels research, or an upgrade level changes.
+	 */
+	public void addTechListener(PlayerTechListener listener) {
+		this.techListeners.add(listener);
+	}
+
+	public void removeTechListener(PlayerTechListener listener) {
+		this.techListeners.remove(listener);
+	}
+
+	/**
+	 * Returns a counter which changes whenever this player's research or upgrade
+	 * status changes, so that state derived from it can be cached.
+	 */
+	public int getTechVersion() {
+		return this.techVersion;
 	}
 
 	public int getID() {
@@ -0,0 +1,95 @@
+package jnibwapi;
+
+/**
+ * Immutable copy of a player's resources and scores in a {@link FrameSnapshot}.
+ * Players whose values did not change share the same instance between
+ * consecutive snapshots.
+ */
+public class PlayerSnapshot {
+	private final int ID;
+	private final int minerals;
+	private final int gas;
+	private final int supplyUsed;
+	private final int supplyTotal;
+	private final int cumulativeMinerals;
+	private final int cumulativeGas;
+	private final int unitScore;
+	private final int killScore;
+	private final int buildingScore;
+	private final int razingScore;
+	private final int techVersion;
+
+	PlayerSnapshot(Player player) {
+		this.ID = player.getID();
+		this.minerals = player.getMinerals();
+		this.gas = player.getGas();
+		this.supplyUsed = player.getSupplyUsed();
+		this.supplyTotal = player.getSupplyTotal();
+		this.cumulativeMinerals = player.getCumulativeMinerals();
+		this.cumulativeGas = player.getCumulativeGas();
+		this.unitScore = player.getUnitScore();
+		this.killScore = player.getKillScore();
+		this.buildingScore = player.getBuildingScore();
+		this.razingScore = player.getRazingScore();
+		this.techVersion = player.getTechVersion();
+	}
+
+	/** Returns true if this snapshot still holds the player's current values */
+	boolean matches(Player player) {
+		return this.minerals == player.getMinerals() && this.gas == player.getGas()
+				&& this.supplyUsed == player.getSupplyUsed() && this.supplyTotal == player.getSupplyTotal()
+				&& this.cumulativeMinerals == player.getCumulativeMinerals()
+				&& this.cumulativeGas == player.getCumulativeGas() && this.unitScore == player.getUnitScore()
+				&& this.killScore == player.getKillScore() && this.buildingScore == player.getBuildingScore()
+				&& this.razingScore == player.getRazingScore() && this.techVersion == player.getTechVersion();
+	}
+
+	public int getID() {
+		return this.ID;
+	}
+
+	public int getMinerals() {
+		return this.minerals;
+	}
+
+	public int getGas() {
+		return this.gas;
+	}
+
+	public int getSupplyUsed() {
+		return this.supplyUsed;
+	}
+
+	public int getSupplyTotal() {
+		return this.supplyTotal;
+	}
+
+	public int getCumulativeMinerals() {
+		return this.cumulativeMinerals;
+	}
+
+	public int getCumulativeGas() {
+		return this.cumulativeGas;
+	}
+
+	public int getUnitScore() {
+		return this.unitScore;
+	}
+
+	public int getKillScore() {
+		return this.killScore;
+	}
+
+	public int getBuildingScore() {
+		return this.buildingScore;
+	}
+
+	public int getRazingScore() {
+		return this.razingScore;
+	}
+
+	/** See {@link Player#getTechVersion()} */
+	public int getTechVersion() {
+		return this.techVersion;
+	}
+}
@@ -0,0 +1,19 @@
+package jnibwapi;
+
+import jnibwapi.types.TechType;
+import jnibwapi.types.UpgradeType;
+
+/**
+ * Interface for notifications of changes to a player's research and upgrades,
+ * see {@link Player#addTechListener(PlayerTechListener)}. Called while the game
+ * state is updated at the start of a frame, before the frame's events.
+ */
+public interface PlayerTechListener {
+	public void researchStarted(Player player, TechType tech);
+
+	public void researchFinished(Player player, TechType tech);
+
+	public void researchCancelled(Player player, TechType tech);
+
+	public void upgradeLevelChanged(Player player, UpgradeType upgrade, int previousLevel, int level);
+}
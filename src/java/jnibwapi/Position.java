@@ -121,20 +121,7 @@ public class Position {
 	 * @see #getPDistance(Position)
 	 **/
 	public int getApproxPDistance(Position target) {
-		int min = Math.abs(this.x - target.x);
-		int max = Math.abs(this.y - target.y);
-		if (max < min) {
-			int temp = max;
-			max = min;
-			min = temp;
-		}
-
-		if (min < (max >> 2)) {
-			return max;
-		}
-
-		int minCalc = (3 * min) >> 3;
-		return ((minCalc >> 5) + minCalc + max - (max >> 4) - (max >> 6));
+		return PackedPosition.getApproxDistance(this.x, this.y, target.x, target.y);
 	}
 
 	public int getApproxWDistance(Position target) {
@@ -151,15 +138,24 @@ public class Position {
 	 * (256x256) map size.
 	 */
 	public boolean isValid() {
-		if (this.x < 0 || this.y < 0) {
-			return false;
-		}
 		Map map;
 		if (JNIBWAPI.getInstance() != null) {
 			map = JNIBWAPI.getInstance().getMap();
 		} else {
 			map = null;
 		}
+		return isValid(map);
+	}
+
+	/**
+	 * Returns true if the position is on the given map, or on the largest
+	 * (256x256) map size if map is null. Avoids looking up the map through the
+	 * JNIBWAPI instance.
+	 */
+	public boolean isValid(Map map) {
+		if (this.x < 0 || this.y < 0) {
+			return false;
+		}
 		if (map == null) {
 			return getBX() < 256 && getBY() < 256;
 		} else {
@@ -1,5 +1,7 @@
 package jnibwapi;
 
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -20,12 +22,188 @@ import jnibwapi.types.UpgradeType.UpgradeTypes;
  * For a description of fields see: http://code.google.com/p/bwapi/wiki/Unit
  */
 public class Unit implements Cloneable {
-	public static final int numAttributes = 123;
+	public static final int numAttributes = 73;
+	/** Number of bitmask words marking the changed attributes in a unit delta */
+	public static final int numDirtyWords = (numAttributes + 31) / 32;
 	public static final double TO_DEGREES = 180.0 / Math.PI;
 	public static final double fixedScale = 100.0;
 
+	/**
+	 * Attribute groups, which can be subscribed to with
+	 * {@link JNIBWAPI#setUnitAttributeGroups(int)}. The ID, player and type are
+	 * always sent. Accessors of attributes in unsubscribed groups throw an
+	 * IllegalStateException.
+	 */
+	public static final int GROUP_POSITION = 1 << 0;
+	public static final int GROUP_COMBAT = 1 << 1;
+	public static final int GROUP_ORDERS = 1 << 2;
+	public static final int GROUP_PRODUCTION = 1 << 3;
+	public static final int GROUP_TIMERS = 1 << 4;
+	public static final int GROUP_FLAGS = 1 << 5;
+	public static final int GROUP_RESOURCES = 1 << 6;
+	public static final int GROUP_INITIAL = 1 << 7;
+	public static final int GROUP_TRANSPORT = 1 << 8;
+	public static final int ALL_GROUPS = (1 << 9) - 1;
+
+	/** Group of each attribute of the bridge's unit record, 0 for those always sent */
+	private static final int[] attributeGroups = { 0, 0, 0, 0, // ID, replay ID, player, type
+			GROUP_POSITION, GROUP_POSITION, GROUP_POSITION, GROUP_POSITION, // position, tile position
+			GROUP_POSITION, GROUP_POSITION, GROUP_POSITION, // angle, velocity
+			GROUP_COMBAT, GROUP_COMBAT, GROUP_COMBAT, // hit points, shields, energy
+			GROUP_RESOURCES, GROUP_RESOURCES, // resources, resource group
+			GROUP_ORDERS, GROUP_ORDERS, // last command frame, last command
+			GROUP_COMBAT, // last attacking player
+			GROUP_INITIAL, GROUP_INITIAL, GROUP_INITIAL, GROUP_INITIAL, // initial type, position
+			GROUP_INITIAL, GROUP_INITIAL, GROUP_INITIAL, // initial tile position, hit points, resources
+			GROUP_COMBAT, GROUP_COMBAT, GROUP_COMBAT, GROUP_COMBAT, GROUP_COMBAT, // kills, ammo
+			GROUP_COMBAT, GROUP_COMBAT, GROUP_COMBAT, GROUP_COMBAT, // cooldowns, defense matrix points
+			GROUP_TIMERS, GROUP_TIMERS, GROUP_TIMERS, GROUP_TIMERS, GROUP_TIMERS, // status timers
+			GROUP_TIMERS, GROUP_TIMERS, GROUP_TIMERS, GROUP_TIMERS, GROUP_TIMERS,
+			GROUP_PRODUCTION, GROUP_PRODUCTION, GROUP_PRODUCTION, GROUP_PRODUCTION, // build type, queue, tech, upgrade
+			GROUP_PRODUCTION, GROUP_PRODUCTION, GROUP_PRODUCTION, GROUP_PRODUCTION, // remaining times
+			GROUP_PRODUCTION, // build unit
+			GROUP_ORDERS, GROUP_ORDERS, GROUP_ORDERS, // target, target position
+			GROUP_ORDERS, GROUP_ORDERS, GROUP_ORDERS, // order, order target, secondary order
+			GROUP_PRODUCTION, GROUP_PRODUCTION, GROUP_PRODUCTION, GROUP_PRODUCTION, // rally, addon
+			GROUP_TRANSPORT, GROUP_TRANSPORT, GROUP_TRANSPORT, GROUP_TRANSPORT, // nydus, transport, loaded, carrier
+			GROUP_PRODUCTION, GROUP_PRODUCTION, // hatchery, larva
+			GROUP_TRANSPORT, // power up
+			GROUP_FLAGS, GROUP_FLAGS // flags
+	};
+
+	// indexes of the attributes in the bridge's unit record, in the order it sends them
+	public static final int ATTR_ID = 0;
+	public static final int ATTR_REPLAY_ID = 1;
+	public static final int ATTR_PLAYER = 2;
+	public static final int ATTR_TYPE = 3;
+	public static final int ATTR_X = 4;
+	public static final int ATTR_Y = 5;
+	public static final int ATTR_TILE_X = 6;
+	public static final int ATTR_TILE_Y = 7;
+	public static final int ATTR_ANGLE = 8;
+	public static final int ATTR_VELOCITY_X = 9;
+	public static final int ATTR_VELOCITY_Y = 10;
+	public static final int ATTR_HIT_POINTS = 11;
+	public static final int ATTR_SHIELDS = 12;
+	public static final int ATTR_ENERGY = 13;
+	public static final int ATTR_RESOURCES = 14;
+	public static final int ATTR_RESOURCE_GROUP = 15;
+	public static final int ATTR_LAST_COMMAND_FRAME = 16;
+	public static final int ATTR_LAST_COMMAND = 17;
+	public static final int ATTR_LAST_ATTACKING_PLAYER = 18;
+	public static final int ATTR_INITIAL_TYPE = 19;
+	public static final int ATTR_INITIAL_X = 20;
+	public static final int ATTR_INITIAL_Y = 21;
+	public static final int ATTR_INITIAL_TILE_X = 22;
+	public static final int ATTR_INITIAL_TILE_Y = 23;
+	public static final int ATTR_INITIAL_HIT_POINTS = 24;
+	public static final int ATTR_INITIAL_RESOURCES = 25;
+	public static final int ATTR_KILL_COUNT = 26;
+	public static final int ATTR_ACID_SPORE_COUNT = 27;
+	public static final int ATTR_INTERCEPTOR_COUNT = 28;
+	public static final int ATTR_SCARAB_COUNT = 29;
+	public static final int ATTR_SPIDER_MINE_COUNT = 30;
+	public static final int ATTR_GROUND_WEAPON_COOLDOWN = 31;
+	public static final int ATTR_AIR_WEAPON_COOLDOWN = 32;
+	public static final int ATTR_SPELL_COOLDOWN = 33;
+	public static final int ATTR_DEFENSE_MATRIX_POINTS = 34;
+	public static final int ATTR_DEFENSE_MATRIX_TIMER = 35;
+	public static final int ATTR_ENSNARE_TIMER = 36;
+	public static final int ATTR_IRRADIATE_TIMER = 37;
+	public static final int ATTR_LOCKDOWN_TIMER = 38;
+	public static final int ATTR_MAELSTROM_TIMER = 39;
+	public static final int ATTR_ORDER_TIMER = 40;
+	public static final int ATTR_PLAGUE_TIMER = 41;
+	public static final int ATTR_REMOVE_TIMER = 42;
+	public static final int ATTR_STASIS_TIMER = 43;
+	public static final int ATTR_STIM_TIMER = 44;
+	public static final int ATTR_BUILD_TYPE = 45;
+	public static final int ATTR_TRAINING_QUEUE_SIZE = 46;
+	public static final int ATTR_RESEARCHING_TECH = 47;
+	public static final int ATTR_UPGRADING_UPGRADE = 48;
+	public static final int ATTR_REMAINING_BUILD_TIME = 49;
+	public static final int ATTR_REMAINING_TRAIN_TIME = 50;
+	public static final int ATTR_REMAINING_RESEARCH_TIME = 51;
+	public static final int ATTR_REMAINING_UPGRADE_TIME = 52;
+	public static final int ATTR_BUILD_UNIT = 53;
+	public static final int ATTR_TARGET_UNIT = 54;
+	public static final int ATTR_TARGET_X = 55;
+	public static final int ATTR_TARGET_Y = 56;
+	public static final int ATTR_ORDER = 57;
+	public static final int ATTR_ORDER_TARGET = 58;
+	public static final int ATTR_SECONDARY_ORDER = 59;
+	public static final int ATTR_RALLY_X = 60;
+	public static final int ATTR_RALLY_Y = 61;
+	public static final int ATTR_RALLY_UNIT = 62;
+	public static final int ATTR_ADDON = 63;
+	public static final int ATTR_NYDUS_EXIT = 64;
+	public static final int ATTR_TRANSPORT = 65;
+	public static final int ATTR_LOADED_UNITS_COUNT = 66;
+	public static final int ATTR_CARRIER = 67;
+	public static final int ATTR_HATCHERY = 68;
+	public static final int ATTR_LARVA_COUNT = 69;
+	public static final int ATTR_POWER_UP = 70;
+	public static final int ATTR_FLAGS_LOW = 71;
+	public static final int ATTR_FLAGS_HIGH = 72;
+
+	// bits of the flags bitset, in the order the bridge packs them
+	public static final long FLAG_EXISTS = 1L << 0;
+	public static final long FLAG_NUKE_READY = 1L << 1;
+	public static final long FLAG_ACCELERATING = 1L << 2;
+	public static final long FLAG_ATTACKING = 1L << 3;
+	public static final long FLAG_ATTACK_FRAME = 1L << 4;
+	public static final long FLAG_BEING_CONSTRUCTED = 1L << 5;
+	public static final long FLAG_BEING_GATHERED = 1L << 6;
+	public static final long FLAG_BEING_HEALED = 1L << 7;
+	public static final long FLAG_BLIND = 1L << 8;
+	public static final long FLAG_BRAKING = 1L << 9;
+	public static final long FLAG_BURROWED = 1L << 10;
+	public static final long FLAG_CARRYING_GAS = 1L << 11;
+	public static final long FLAG_CARRYING_MINERALS = 1L << 12;
+	public static final long FLAG_CLOAKED = 1L << 13;
+	public static final long FLAG_COMPLETED = 1L << 14;
+	public static final long FLAG_CONSTRUCTING = 1L << 15;
+	public static final long FLAG_DEFENSE_MATRIXED = 1L << 16;
+	public static final long FLAG_DETECTED = 1L << 17;
+	public static final long FLAG_ENSNARED = 1L << 18;
+	public static final long FLAG_FOLLOWING = 1L << 19;
+	public static final long FLAG_GATHERING_GAS = 1L << 20;
+	public static final long FLAG_GATHERING_MINERALS = 1L << 21;
+	public static final long FLAG_HALLUCINATION = 1L << 22;
+	public static final long FLAG_HOLDING_POSITION = 1L << 23;
+	public static final long FLAG_IDLE = 1L << 24;
+	public static final long FLAG_INTERRUPTABLE = 1L << 25;
+	public static final long FLAG_INVINCIBLE = 1L << 26;
+	public static final long FLAG_IRRADIATED = 1L << 27;
+	public static final long FLAG_LIFTED = 1L << 28;
+	public static final long FLAG_LOADED = 1L << 29;
+	public static final long FLAG_LOCKED_DOWN = 1L << 30;
+	public static final long FLAG_MAELSTROMMED = 1L << 31;
+	public static final long FLAG_MORPHING = 1L << 32;
+	public static final long FLAG_MOVING = 1L << 33;
+	public static final long FLAG_PARASITED = 1L << 34;
+	public static final long FLAG_PATROLLING = 1L << 35;
+	public static final long FLAG_PLAGUED = 1L << 36;
+	public static final long FLAG_REPAIRING = 1L << 37;
+	public static final long FLAG_SELECTED = 1L << 38;
+	public static final long FLAG_SIEGED = 1L << 39;
+	public static final long FLAG_STARTING_ATTACK = 1L << 40;
+	public static final long FLAG_STASISED = 1L << 41;
+	public static final long FLAG_STIMMED = 1L << 42;
+	public static final long FLAG_STUCK = 1L << 43;
+	public static final long FLAG_TRAINING = 1L << 44;
+	public static final long FLAG_UNDER_ATTACK = 1L << 45;
+	public static final long FLAG_UNDER_DARK_SWARM = 1L << 46;
+	public static final long FLAG_UNDER_DISRUPTION_WEB = 1L << 47;
+	public static final long FLAG_UNDER_STORM = 1L << 48;
+	public static final long FLAG_UNPOWERED = 1L << 49;
+	public static final long FLAG_UPGRADING = 1L << 50;
+	public static final long FLAG_VISIBLE = 1L << 51;
+
 	private final JNIBWAPI bwapi;
+	private final int subscribedGroups;
 	private final int ID;
+	private boolean destroyed = false;
 	private int replayID;
 	private int playerID;
 	private int typeID;
@@ -91,194 +269,368 @@ public class Unit implements Cloneable {
 	private int larvaCount;
 	private int hatcheryUnitID;
 	private int powerUpUnitID;
-	private boolean exists;
-	private boolean nukeReady;
-	private boolean accelerating;
-	private boolean attacking;
-	private boolean attackFrame;
-	private boolean beingConstructed;
-	private boolean beingGathered;
-	private boolean beingHealed;
-	private boolean blind;
-	private boolean braking;
-	private boolean burrowed;
-	private boolean carryingGas;
-	private boolean carryingMinerals;
-	private boolean cloaked;
-	private boolean completed;
-	private boolean constructing;
-	private boolean defenseMatrixed;
-	private boolean detected;
-	private boolean ensnared;
-	private boolean following;
-	private boolean gatheringGas;
-	private boolean gatheringMinerals;
-	private boolean hallucination;
-	private boolean holdingPosition;
-	private boolean idle;
-	private boolean interruptable;
-	private boolean invincible;
-	private boolean irradiated;
-	private boolean lifted;
-	private boolean loaded;
-	private boolean lockedDown;
-	private boolean maelstrommed;
-	private boolean morphing;
-	private boolean moving;
-	private boolean parasited;
-	private boolean patrolling;
-	private boolean plagued;
-	private boolean repairing;
-	private boolean selected;
-	private boolean sieged;
-	private boolean startingAttack;
-	private boolean stasised;
-	private boolean stimmed;
-	private boolean stuck;
-	private boolean training;
-	private boolean underAttack;
-	private boolean underDarkSwarm;
-	private boolean underDisruptionWeb;
-	private boolean underStorm;
-	private boolean unpowered;
-	private boolean upgrading;
-	private boolean visible;
+	/** Boolean attributes, one bit per FLAG_ constant */
+	private long flags;
+	/** Kinds of change applied by the last {@link #updateDelta(IntBuffer, int)}, see {@link UnitChanges} */
+	private int changes;
 
 	public Unit(int ID, JNIBWAPI bwapi) {
 		this.ID = ID;
 		this.bwapi = bwapi;
+		this.subscribedGroups = bwapi.getUnitAttributeGroups();
+	}
+
+	/**
+	 * Returns the attributes sent for added units when the given groups are
+	 * subscribed, in the order the bridge sends them (excluding the ID).
+	 */
+	static int[] getAttributeColumns(int groups) {
+		int numColumns = 0;
+		int[] columns = new int[numAttributes - 1];
+		for (int attribute = 1; attribute < numAttributes; attribute++) {
+			if (attributeGroups[attribute] == 0 || (groups & attributeGroups[attribute]) != 0) {
+				columns[numColumns++] = attribute;
+			}
+		}
+		return Arrays.copyOf(columns, numColumns);
+	}
+
+	private void requireGroup(int group) {
+		if ((this.subscribedGroups & group) == 0) {
+			throw new IllegalStateException("Unit attribute group " + group
+					+ " is not subscribed, see JNIBWAPI.setUnitAttributeGroups");
+		}
 	}
 
 	public void setDestroyed() {
-		this.exists = false;
+		this.flags &= ~FLAG_EXISTS;
+		this.destroyed = true;
+	}
+
+	/**
+	 * Whether the unit exists, without requiring GROUP_FLAGS: units are only sent
+	 * while they exist, so without the flags a unit exists until it is removed.
+	 */
+	private boolean existsOrUnknown() {
+		if (this.destroyed) {
+			return false;
+		}
+		return (this.subscribedGroups & GROUP_FLAGS) == 0 || (this.flags & FLAG_EXISTS) != 0;
+	}
+
+	/**
+	 * Reads the unit's attributes starting at the given index of the bridge's data
+	 * buffer. Absolute reads are used, so the buffer's position is left unchanged.
+	 */
+	public void update(IntBuffer data, int index) {
+		if (this.ID != data.get(index)) {
+			throw new IllegalArgumentException();
+		}
+		for (int attribute = 1; attribute < numAttributes; attribute++) {
+			setAttribute(attribute, data.get(index + attribute));
+		}
+	}
+
+	/**
+	 * Reads the record of an added unit from the bridge's unit delta: the unit ID
+	 * followed by only the given attributes (see {@link #getAttributeColumns(int)}).
+	 *
+	 * @return the index just past this unit's record
+	 */
+	public int updateColumns(IntBuffer data, int index, int[] columns) {
+		if (this.ID != data.get(index++)) {
+			throw new IllegalArgumentException();
+		}
+		for (int attribute : columns) {
+			setAttribute(attribute, data.get(index++));
+		}
+		return index;
 	}
 
-	public void update(int[] data, int index) {
-		if (this.ID != data[index++]) {
+	/**
+	 * Applies a partial update from the bridge's unit delta: the unit ID, a bitmask
+	 * of {@link #numDirtyWords} words marking which attributes changed, then the new
+	 * value of each changed attribute in attribute order. The kinds of change
+	 * applied are recorded for {@link #getChanges()}.
+	 *
+	 * @return the index just past this unit's entry
+	 */
+	public int updateDelta(IntBuffer data, int index) {
+		if (this.ID != data.get(index++)) {
 			throw new IllegalArgumentException();
 		}
-		this.replayID = data[index++];
-		this.playerID = data[index++];
-		this.typeID = data[index++];
-		this.x = data[index++];
-		this.y = data[index++];
-		index++; // tileX
-		index++; // tileY
-		this.angle = (data[index++] / TO_DEGREES);
-		this.velocityX = (data[index++] / fixedScale);
-		this.velocityY = (data[index++] / fixedScale);
-		this.hitPoints = data[index++];
-		this.shield = data[index++];
-		this.energy = data[index++];
-		this.resources = data[index++];
-		this.resourceGroup = data[index++];
-		this.lastCommandFrame = data[index++];
-		this.lastCommandID = data[index++];
-		this.lastAttackingPlayerID = data[index++];
-		this.initialTypeID = data[index++];
-		this.initialX = data[index++];
-		this.initialY = data[index++];
-		index++; // initialTileX
-		index++; // initialTileY
-		this.initialHitPoints = data[index++];
-		this.initialResources = data[index++];
-		this.killCount = data[index++];
-		this.acidSporeCount = data[index++];
-		this.interceptorCount = data[index++];
-		this.scarabCount = data[index++];
-		this.spiderMineCount = data[index++];
-		this.groundWeaponCooldown = data[index++];
-		this.airWeaponCooldown = data[index++];
-		this.spellCooldown = data[index++];
-		this.defenseMatrixPoints = data[index++];
-		this.defenseMatrixTimer = data[index++];
-		this.ensnareTimer = data[index++];
-		this.irradiateTimer = data[index++];
-		this.lockdownTimer = data[index++];
-		this.maelstromTimer = data[index++];
-		this.orderTimer = data[index++];
-		this.plagueTimer = data[index++];
-		this.removeTimer = data[index++];
-		this.stasisTimer = data[index++];
-		this.stimTimer = data[index++];
-		this.buildTypeID = data[index++];
-		this.trainingQueueSize = data[index++];
-		this.researchingTechID = data[index++];
-		this.upgradingUpgradeID = data[index++];
-		this.remainingBuildTimer = data[index++];
-		this.remainingTrainTime = data[index++];
-		this.remainingResearchTime = data[index++];
-		this.remainingUpgradeTime = data[index++];
-		this.buildUnitID = data[index++];
-		this.targetUnitID = data[index++];
-		this.targetX = data[index++];
-		this.targetY = data[index++];
-		this.orderID = data[index++];
-		this.orderTargetID = data[index++];
-		this.secondaryOrderID = data[index++];
-		this.rallyX = data[index++];
-		this.rallyY = data[index++];
-		this.rallyUnitID = data[index++];
-		this.addOnID = data[index++];
-		this.nydusExitUnitID = data[index++];
-		this.transportID = data[index++];
-		index++; // loadedUnitsCount
-		this.carrierUnitID = data[index++];
-		this.hatcheryUnitID = data[index++];
-		this.larvaCount = data[index++];
-		this.powerUpUnitID = data[index++];
-		this.exists = (data[index++] == 1);
-		this.nukeReady = (data[index++] == 1);
-		this.accelerating = (data[index++] == 1);
-		this.attacking = (data[index++] == 1);
-		this.attackFrame = (data[index++] == 1);
-		this.beingConstructed = (data[index++] == 1);
-		this.beingGathered = (data[index++] == 1);
-		this.beingHealed = (data[index++] == 1);
-		this.blind = (data[index++] == 1);
-		this.braking = (data[index++] == 1);
-		this.burrowed = (data[index++] == 1);
-		this.carryingGas = (data[index++] == 1);
-		this.carryingMinerals = (data[index++] == 1);
-		this.cloaked = (data[index++] == 1);
-		this.completed = (data[index++] == 1);
-		this.constructing = (data[index++] == 1);
-		this.defenseMatrixed = (data[index++] == 1);
-		this.detected = (data[index++] == 1);
-		this.ensnared = (data[index++] == 1);
-		this.following = (data[index++] == 1);
-		this.gatheringGas = (data[index++] == 1);
-		this.gatheringMinerals = (data[index++] == 1);
-		this.hallucination = (data[index++] == 1);
-		this.holdingPosition = (data[index++] == 1);
-		this.idle = (data[index++] == 1);
-		this.interruptable = (data[index++] == 1);
-		this.invincible = (data[index++] == 1);
-		this.irradiated = (data[index++] == 1);
-		this.lifted = (data[index++] == 1);
-		this.loaded = (data[index++] == 1);
-		this.lockedDown = (data[index++] == 1);
-		this.maelstrommed = (data[index++] == 1);
-		this.morphing = (data[index++] == 1);
-		this.moving = (data[index++] == 1);
-		this.parasited = (data[index++] == 1);
-		this.patrolling = (data[index++] == 1);
-		this.plagued = (data[index++] == 1);
-		this.repairing = (data[index++] == 1);
-		this.selected = (data[index++] == 1);
-		this.sieged = (data[index++] == 1);
-		this.startingAttack = (data[index++] == 1);
-		this.stasised = (data[index++] == 1);
-		this.stimmed = (data[index++] == 1);
-		this.stuck = (data[index++] == 1);
-		this.training = (data[index++] == 1);
-		this.underAttack = (data[index++] == 1);
-		this.underDarkSwarm = (data[index++] == 1);
-		this.underDisruptionWeb = (data[index++] == 1);
-		this.underStorm = (data[index++] == 1);
-		this.unpowered = (data[index++] == 1);
-		this.upgrading = (data[index++] == 1);
-		this.visible = (data[index++] == 1);
+		int previousHealth = this.hitPoints + this.shield;
+		long previousFlags = this.flags;
+		int maskIndex = index;
+		index += numDirtyWords;
+		for (int word = 0; word < numDirtyWords; word++) {
+			int dirty = data.get(maskIndex + word);
+			while (dirty != 0) {
+				int bit = Integer.numberOfTrailingZeros(dirty);
+				dirty &= dirty - 1;
+				setAttribute(word * 32 + bit, data.get(index++));
+			}
+		}
+
+		// the bridge only marks attributes whose value changed
+		int changes = 0;
+		if (isDirty(data, maskIndex, ATTR_PLAYER)) {
+			changes |= UnitChanges.PLAYER;
+		}
+		if (isDirty(data, maskIndex, ATTR_TYPE)) {
+			changes |= UnitChanges.TYPE;
+		}
+		if (isDirty(data, maskIndex, ATTR_X) || isDirty(data, maskIndex, ATTR_Y)) {
+			changes |= UnitChanges.POSITION;
+		}
+		if (isDirty(data, maskIndex, ATTR_HIT_POINTS) || isDirty(data, maskIndex, ATTR_SHIELDS)) {
+			changes |= UnitChanges.HIT_POINTS;
+			if (this.hitPoints + this.shield < previousHealth) {
+				changes |= UnitChanges.DAMAGED;
+			}
+		}
+		if (isDirty(data, maskIndex, ATTR_ORDER)) {
+			changes |= UnitChanges.ORDER;
+		}
+		if (((this.flags ^ previousFlags) & FLAG_COMPLETED) != 0) {
+			changes |= UnitChanges.COMPLETION;
+		}
+		if (((this.flags ^ previousFlags) & FLAG_VISIBLE) != 0) {
+			changes |= UnitChanges.VISIBILITY;
+		}
+		this.changes = changes;
+		return index;
+	}
+
+	private static boolean isDirty(IntBuffer data, int maskIndex, int attribute) {
+		return (data.get(maskIndex + attribute / 32) & (1 << (attribute % 32))) != 0;
+	}
+
+	/**
+	 * Returns the kinds of change (see {@link UnitChanges}) applied by the last
+	 * call to {@link #updateDelta(IntBuffer, int)}.
+	 */
+	int getChanges() {
+		return this.changes;
+	}
+
+	/** Sets a single attribute, indexed by its position in the bridge's unit record */
+	private void setAttribute(int attribute, int value) {
+		switch (attribute) {
+		case ATTR_REPLAY_ID:
+			this.replayID = value;
+			break;
+		case ATTR_PLAYER:
+			this.playerID = value;
+			break;
+		case ATTR_TYPE:
+			this.typeID = value;
+			break;
+		case ATTR_X:
+			this.x = value;
+			break;
+		case ATTR_Y:
+			this.y = value;
+			break;
+		case ATTR_TILE_X:
+			break;
+		case ATTR_TILE_Y:
+			break;
+		case ATTR_ANGLE:
+			this.angle = value / TO_DEGREES;
+			break;
+		case ATTR_VELOCITY_X:
+			this.velocityX = value / fixedScale;
+			break;
+		case ATTR_VELOCITY_Y:
+			this.velocityY = value / fixedScale;
+			break;
+		case ATTR_HIT_POINTS:
+			this.hitPoints = value;
+			break;
+		case ATTR_SHIELDS:
+			this.shield = value;
+			break;
+		case ATTR_ENERGY:
+			this.energy = value;
+			break;
+		case ATTR_RESOURCES:
+			this.resources = value;
+			break;
+		case ATTR_RESOURCE_GROUP:
+			this.resourceGroup = value;
+			break;
+		case ATTR_LAST_COMMAND_FRAME:
+			this.lastCommandFrame = value;
+			break;
+		case ATTR_LAST_COMMAND:
+			this.lastCommandID = value;
+			break;
+		case ATTR_LAST_ATTACKING_PLAYER:
+			this.lastAttackingPlayerID = value;
+			break;
+		case ATTR_INITIAL_TYPE:
+			this.initialTypeID = value;
+			break;
+		case ATTR_INITIAL_X:
+			this.initialX = value;
+			break;
+		case ATTR_INITIAL_Y:
+			this.initialY = value;
+			break;
+		case ATTR_INITIAL_TILE_X:
+			break;
+		case ATTR_INITIAL_TILE_Y:
+			break;
+		case ATTR_INITIAL_HIT_POINTS:
+			this.initialHitPoints = value;
+			break;
+		case ATTR_INITIAL_RESOURCES:
+			this.initialResources = value;
+			break;
+		case ATTR_KILL_COUNT:
+			this.killCount = value;
+			break;
+		case ATTR_ACID_SPORE_COUNT:
+			this.acidSporeCount = value;
+			break;
+		case ATTR_INTERCEPTOR_COUNT:
+			this.interceptorCount = value;
+			break;
+		case ATTR_SCARAB_COUNT:
+			this.scarabCount = value;
+			break;
+		case ATTR_SPIDER_MINE_COUNT:
+			this.spiderMineCount = value;
+			break;
+		case ATTR_GROUND_WEAPON_COOLDOWN:
+			this.groundWeaponCooldown = value;
+			break;
+		case ATTR_AIR_WEAPON_COOLDOWN:
+			this.airWeaponCooldown = value;
+			break;
+		case ATTR_SPELL_COOLDOWN:
+			this.spellCooldown = value;
+			break;
+		case ATTR_DEFENSE_MATRIX_POINTS:
+			this.defenseMatrixPoints = value;
+			break;
+		case ATTR_DEFENSE_MATRIX_TIMER:
+			this.defenseMatrixTimer = value;
+			break;
+		case ATTR_ENSNARE_TIMER:
+			this.ensnareTimer = value;
+			break;
+		case ATTR_IRRADIATE_TIMER:
+			this.irradiateTimer = value;
+			break;
+		case ATTR_LOCKDOWN_TIMER:
+			this.lockdownTimer = value;
+			break;
+		case ATTR_MAELSTROM_TIMER:
+			this.maelstromTimer = value;
+			break;
+		case ATTR_ORDER_TIMER:
+			this.orderTimer = value;
+			break;
+		case ATTR_PLAGUE_TIMER:
+			this.plagueTimer = value;
+			break;
+		case ATTR_REMOVE_TIMER:
+			this.removeTimer = value;
+			break;
+		case ATTR_STASIS_TIMER:
+			this.stasisTimer = value;
+			break;
+		case ATTR_STIM_TIMER:
+			this.stimTimer = value;
+			break;
+		case ATTR_BUILD_TYPE:
+			this.buildTypeID = value;
+			break;
+		case ATTR_TRAINING_QUEUE_SIZE:
+			this.trainingQueueSize = value;
+			break;
+		case ATTR_RESEARCHING_TECH:
+			this.researchingTechID = value;
+			break;
+		case ATTR_UPGRADING_UPGRADE:
+			this.upgradingUpgradeID = value;
+			break;
+		case ATTR_REMAINING_BUILD_TIME:
+			this.remainingBuildTimer = value;
+			break;
+		case ATTR_REMAINING_TRAIN_TIME:
+			this.remainingTrainTime = value;
+			break;
+		case ATTR_REMAINING_RESEARCH_TIME:
+			this.remainingResearchTime = value;
+			break;
+		case ATTR_REMAINING_UPGRADE_TIME:
+			this.remainingUpgradeTime = value;
+			break;
+		case ATTR_BUILD_UNIT:
+			this.buildUnitID = value;
+			break;
+		case ATTR_TARGET_UNIT:
+			this.targetUnitID = value;
+			break;
+		case ATTR_TARGET_X:
+			this.targetX = value;
+			break;
+		case ATTR_TARGET_Y:
+			this.targetY = value;
+			break;
+		case ATTR_ORDER:
+			this.orderID = value;
+			break;
+		case ATTR_ORDER_TARGET:
+			this.orderTargetID = value;
+			break;
+		case ATTR_SECONDARY_ORDER:
+			this.secondaryOrderID = value;
+			break;
+		case ATTR_RALLY_X:
+			this.rallyX = value;
+			break;
+		case ATTR_RALLY_Y:
+			this.rallyY = value;
+			break;
+		case ATTR_RALLY_UNIT:
+			this.rallyUnitID = value;
+			break;
+		case ATTR_ADDON:
+			this.addOnID = value;
+			break;
+		case ATTR_NYDUS_EXIT:
+			this.nydusExitUnitID = value;
+			break;
+		case ATTR_TRANSPORT:
+			this.transportID = value;
+			break;
+		case ATTR_LOADED_UNITS_COUNT:
+			break;
+		case ATTR_CARRIER:
+			this.carrierUnitID = value;
+			break;
+		case ATTR_HATCHERY:
+			this.hatcheryUnitID = value;
+			break;
+		case ATTR_LARVA_COUNT:
+			this.larvaCount = value;
+			break;
+		case ATTR_POWER_UP:
+			this.powerUpUnitID = value;
+			break;
+		case ATTR_FLAGS_LOW:
+			this.flags = (this.flags & 0xFFFFFFFF00000000L) | (value & 0xFFFFFFFFL);
+			break;
+		case ATTR_FLAGS_HIGH:
+			this.flags = (this.flags & 0xFFFFFFFFL) | ((long) value << 32);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown unit attribute: " + attribute);
+		}
 	}
 
 	@Override
@@ -304,7 +656,7 @@ public class Unit implements Cloneable {
 	 * unit.
 	 */
 	public double getDistance(Unit target) {
-		if (!isExists() || target == null || !target.isExists()) {
+		if (!existsOrUnknown() || target == null || !target.existsOrUnknown()) {
 			return Integer.MAX_VALUE;
 		}
 
@@ -326,7 +678,7 @@ public class Unit implements Cloneable {
 				yDist = 0;
 			}
 		}
-		return new Position(0, 0).getPDistance(new Position(xDist, yDist));
+		return Math.sqrt(xDist * xDist + yDist * yDist);
 	}
 
 	/**
@@ -334,24 +686,29 @@ public class Unit implements Cloneable {
 	 * position.
 	 */
 	public double getDistance(Position target) {
-		if (!isExists()) {
+		return getDistance(target.getPX(), target.getPY());
+	}
+
+	/** Primitive overload of {@link #getDistance(Position)} for pixel coordinates */
+	public double getDistance(int px, int py) {
+		if (!existsOrUnknown()) {
 			return Integer.MAX_VALUE;
 		}
-		int xDist = getLeft() - (target.getPX() + 1);
+		int xDist = getLeft() - (px + 1);
 		if (xDist < 0) {
-			xDist = target.getPX() - (getRight() + 1);
+			xDist = px - (getRight() + 1);
 			if (xDist < 0) {
 				xDist = 0;
 			}
 		}
-		int yDist = getTop() - (target.getPY() + 1);
+		int yDist = getTop() - (py + 1);
 		if (yDist < 0) {
-			yDist = target.getPY() - (getBottom() + 1);
+			yDist = py - (getBottom() + 1);
 			if (yDist < 0) {
 				yDist = 0;
 			}
 		}
-		return new Position(0, 0).getPDistance(new Position(xDist, yDist));
+		return Math.sqrt(xDist * xDist + yDist * yDist);
 	}
 
 	/** The top left corner of the unit's collision boundary. */
@@ -364,19 +721,27 @@ public class Unit implements Cloneable {
 		return new Position(getRight(), getBottom());
 	}
 
-	private int getLeft() {
+	/** Pixel x-coordinate of the left edge of the unit's collision boundary */
+	public int getLeft() {
+		requireGroup(GROUP_POSITION);
 		return this.x - getType().getDimensionLeft();
 	}
 
-	private int getTop() {
+	/** Pixel y-coordinate of the top edge of the unit's collision boundary */
+	public int getTop() {
+		requireGroup(GROUP_POSITION);
 		return this.y - getType().getDimensionUp();
 	}
 
-	private int getRight() {
+	/** Pixel x-coordinate of the right edge of the unit's collision boundary */
+	public int getRight() {
+		requireGroup(GROUP_POSITION);
 		return this.x + getType().getDimensionRight();
 	}
 
-	private int getBottom() {
+	/** Pixel y-coordinate of the bottom edge of the unit's collision boundary */
+	public int getBottom() {
+		requireGroup(GROUP_POSITION);
 		return this.y + getType().getDimensionDown();
 	}
 
@@ -395,52 +760,71 @@ public class Unit implements Cloneable {
 		return this.bwapi.getPlayer(this.playerID);
 	}
 
+	public int getPlayerID() {
+		return this.playerID;
+	}
+
+	public int getTypeID() {
+		return this.typeID;
+	}
+
 	public UnitType getType() {
 		return UnitTypes.getUnitType(this.typeID);
 	}
 
 	public int getX() {
+		requireGroup(GROUP_POSITION);
 		return this.x;
 	}
 
 	public int getY() {
+		requireGroup(GROUP_POSITION);
 		return this.y;
 	}
 
 	/** Gives the position of the <b>center</b> of the unit. */
 	public Position getPosition() {
+		requireGroup(GROUP_POSITION);
 		return new Position(this.x, this.y);
 	}
 
 	public double getAngle() {
+		requireGroup(GROUP_POSITION);
 		return this.angle;
 	}
 
 	public double getVelocityX() {
+		requireGroup(GROUP_POSITION);
 		return this.velocityX;
 	}
 
 	public double getVelocityY() {
+		requireGroup(GROUP_POSITION);
 		return this.velocityY;
 	}
 
 	public int getHitPoints() {
+		requireGroup(GROUP_COMBAT);
 		return this.hitPoints;
 	}
 
 	public int getShields() {
+		requireGroup(GROUP_COMBAT);
 		return this.shield;
 	}
 
 	public int getEnergy() {
+		requireGroup(GROUP_COMBAT);
 		return this.energy;
 	}
 
 	public int getResources() {
+		requireGroup(GROUP_RESOURCES);
 		return this.resources;
 	}
 
 	public int getResourceGroup() {
+		requireGroup(GROUP_RESOURCES);
 		return this.resourceGroup;
 	}
 
@@ -453,50 +837,62 @@ public class Unit implements Cloneable {
 	}
 
 	public int getLastCommandFrame() {
+		requireGroup(GROUP_ORDERS);
 		return this.lastCommandFrame;
 	}
 
 	public UnitCommandType getLastCommand() {
+		requireGroup(GROUP_ORDERS);
 		return UnitCommandTypes.getUnitCommandType(this.lastCommandID);
 	}
 
 	public Player getLastAttackingPlayer() {
+		requireGroup(GROUP_COMBAT);
 		return this.bwapi.getPlayer(this.lastAttackingPlayerID);
 	}
 
 	public UnitType getInitialType() {
+		requireGroup(GROUP_INITIAL);
 		return UnitTypes.getUnitType(this.initialTypeID);
 	}
 
 	public int getInitialX() {
+		requireGroup(GROUP_INITIAL);
 		return this.initialX;
 	}
 
 	public int getInitialY() {
+		requireGroup(GROUP_INITIAL);
 		return this.initialY;
 	}
 
 	public Position getInitialPosition() {
+		requireGroup(GROUP_INITIAL);
 		return new Position(this.initialX, this.initialY);
 	}
 
 	public int getInitialHitPoints() {
+		requireGroup(GROUP_INITIAL);
 		return this.initialHitPoints;
 	}
 
 	public int getInitialResources() {
+		requireGroup(GROUP_INITIAL);
 		return this.initialResources;
 	}
 
 	public int getKillCount() {
+		requireGroup(GROUP_COMBAT);
 		return this.killCount;
 	}
 
 	public int getAcidSporeCount() {
+		requireGroup(GROUP_COMBAT);
 		return this.acidSporeCount;
 	}
 
 	public int getInterceptorCount() {
+		requireGroup(GROUP_COMBAT);
 		return this.interceptorCount;
 	}
 
@@ -509,158 +905,197 @@ public class Unit implements Cloneable {
 	}
 
 	public int getScarabCount() {
+		requireGroup(GROUP_COMBAT);
 		return this.scarabCount;
 	}
 
 	public int getSpiderMineCount() {
+		requireGroup(GROUP_COMBAT);
 		return this.spiderMineCount;
 	}
 
 	public int getGroundWeaponCooldown() {
+		requireGroup(GROUP_COMBAT);
 		return this.groundWeaponCooldown;
 	}
 
 	public int getAirWeaponCooldown() {
+		requireGroup(GROUP_COMBAT);
 		return this.airWeaponCooldown;
 	}
 
 	public int getSpellCooldown() {
+		requireGroup(GROUP_COMBAT);
 		return this.spellCooldown;
 	}
 
 	public int getDefenseMatrixPoints() {
+		requireGroup(GROUP_COMBAT);
 		return this.defenseMatrixPoints;
 	}
 
 	public int getDefenseMatrixTimer() {
+		requireGroup(GROUP_TIMERS);
 		return this.defenseMatrixTimer;
 	}
 
 	public int getEnsnareTimer() {
+		requireGroup(GROUP_TIMERS);
 		return this.ensnareTimer;
 	}
 
 	public int getIrradiateTimer() {
+		requireGroup(GROUP_TIMERS);
 		return this.irradiateTimer;
 	}
 
 	public int getLockdownTimer() {
+		requireGroup(GROUP_TIMERS);
 		return this.lockdownTimer;
 	}
 
 	public int getMaelstromTimer() {
+		requireGroup(GROUP_TIMERS);
 		return this.maelstromTimer;
 	}
 
 	public int getOrderTimer() {
+		requireGroup(GROUP_TIMERS);
 		return this.orderTimer;
 	}
 
 	public int getPlagueTimer() {
+		requireGroup(GROUP_TIMERS);
 		return this.plagueTimer;
 	}
 
 	public int getRemoveTimer() {
+		requireGroup(GROUP_TIMERS);
 		return this.removeTimer;
 	}
 
 	public int getStasisTimer() {
+		requireGroup(GROUP_TIMERS);
 		return this.stasisTimer;
 	}
 
 	public int getStimTimer() {
+		requireGroup(GROUP_TIMERS);
 		return this.stimTimer;
 	}
 
 	public UnitType getBuildType() {
+		requireGroup(GROUP_PRODUCTION);
 		return UnitTypes.getUnitType(this.buildTypeID);
 	}
 
 	public int getTrainingQueueSize() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.trainingQueueSize;
 	}
 
 	public TechType getTech() {
+		requireGroup(GROUP_PRODUCTION);
 		return TechTypes.getTechType(this.researchingTechID);
 	}
 
 	public UpgradeType getUpgrade() {
+		requireGroup(GROUP_PRODUCTION);
 		return UpgradeTypes.getUpgradeType(this.upgradingUpgradeID);
 	}
 
 	public int getRemainingBuildTimer() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.remainingBuildTimer;
 	}
 
 	public int getRemainingTrainTime() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.remainingTrainTime;
 	}
 
 	public int getRemainingResearchTime() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.remainingResearchTime;
 	}
 
 	public int getRemainingUpgradeTime() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.remainingUpgradeTime;
 	}
 
 	public Unit getBuildUnit() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.bwapi.getUnit(this.buildUnitID);
 	}
 
 	public Unit getTarget() {
+		requireGroup(GROUP_ORDERS);
 		return this.bwapi.getUnit(this.targetUnitID);
 	}
 
 	public int getTargetX() {
+		requireGroup(GROUP_ORDERS);
 		return this.targetX;
 	}
 
 	public int getTargetY() {
+		requireGroup(GROUP_ORDERS);
 		return this.targetY;
 	}
 
 	public Position getTargetPosition() {
+		requireGroup(GROUP_ORDERS);
 		return new Position(this.targetX, this.targetY);
 	}
 
 	public OrderType getOrder() {
+		requireGroup(GROUP_ORDERS);
 		return OrderTypes.getOrderType(this.orderID);
 	}
 
 	public Unit getOrderTarget() {
+		requireGroup(GROUP_ORDERS);
 		return this.bwapi.getUnit(this.orderTargetID);
 	}
 
 	public OrderType getSecondaryOrder() {
+		requireGroup(GROUP_ORDERS);
 		return OrderTypes.getOrderType(this.secondaryOrderID);
 	}
 
 	public int getRallyX() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.rallyX;
 	}
 
 	public int getRallyY() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.rallyY;
 	}
 
 	public Position getRallyPosition() {
+		requireGroup(GROUP_PRODUCTION);
 		return new Position(this.rallyX, this.rallyY);
 	}
 
 	public Unit getRallyUnit() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.bwapi.getUnit(this.rallyUnitID);
 	}
 
 	public Unit getAddon() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.bwapi.getUnit(this.addOnID);
 	}
 
 	public Unit getNydusExit() {
+		requireGroup(GROUP_TRANSPORT);
 		return this.bwapi.getUnit(this.nydusExitUnitID);
 	}
 
 	public Unit getTransport() {
+		requireGroup(GROUP_TRANSPORT);
 		return this.bwapi.getUnit(this.transportID);
 	}
 
@@ -673,14 +1108,17 @@ public class Unit implements Cloneable {
 	}
 
 	public Unit getCarrier() {
+		requireGroup(GROUP_TRANSPORT);
 		return this.bwapi.getUnit(this.carrierUnitID);
 	}
 
 	public Unit getHatchery() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.bwapi.getUnit(this.hatcheryUnitID);
 	}
 
 	public int getLarvaCount() {
+		requireGroup(GROUP_PRODUCTION);
 		return this.larvaCount;
 	}
 
@@ -693,215 +1131,286 @@ public class Unit implements Cloneable {
 	}
 
 	public Unit getPowerUp() {
+		requireGroup(GROUP_TRANSPORT);
 		return this.bwapi.getUnit(this.powerUpUnitID);
 	}
 
 	public boolean isExists() {
-		return this.exists;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_EXISTS) != 0;
 	}
 
 	public boolean isNukeReady() {
-		return this.nukeReady;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_NUKE_READY) != 0;
 	}
 
 	public boolean isAccelerating() {
-		return this.accelerating;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_ACCELERATING) != 0;
 	}
 
 	public boolean isAttacking() {
-		return this.attacking;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_ATTACKING) != 0;
 	}
 
 	public boolean isAttackFrame() {
-		return this.attackFrame;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_ATTACK_FRAME) != 0;
 	}
 
 	public boolean isBeingConstructed() {
-		return this.beingConstructed;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_BEING_CONSTRUCTED) != 0;
 	}
 
 	public boolean isBeingGathered() {
-		return this.beingGathered;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_BEING_GATHERED) != 0;
 	}
 
 	public boolean isBeingHealed() {
-		return this.beingHealed;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_BEING_HEALED) != 0;
 	}
 
 	public boolean isBlind() {
-		return this.blind;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_BLIND) != 0;
 	}
 
 	public boolean isBraking() {
-		return this.braking;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_BRAKING) != 0;
 	}
 
 	public boolean isBurrowed() {
-		return this.burrowed;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_BURROWED) != 0;
 	}
 
 	public boolean isCarryingGas() {
-		return this.carryingGas;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_CARRYING_GAS) != 0;
 	}
 
 	public boolean isCarryingMinerals() {
-		return this.carryingMinerals;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_CARRYING_MINERALS) != 0;
 	}
 
 	public boolean isCloaked() {
-		return this.cloaked;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_CLOAKED) != 0;
 	}
 
 	public boolean isCompleted() {
-		return this.completed;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_COMPLETED) != 0;
 	}
 
 	public boolean isConstructing() {
-		return this.constructing;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_CONSTRUCTING) != 0;
 	}
 
 	public boolean isDefenseMatrixed() {
-		return this.defenseMatrixed;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_DEFENSE_MATRIXED) != 0;
 	}
 
 	public boolean isDetected() {
-		return this.detected;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_DETECTED) != 0;
 	}
 
 	public boolean isEnsnared() {
-		return this.ensnared;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_ENSNARED) != 0;
 	}
 
 	public boolean isFollowing() {
-		return this.following;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_FOLLOWING) != 0;
 	}
 
 	public boolean isGatheringGas() {
-		return this.gatheringGas;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_GATHERING_GAS) != 0;
 	}
 
 	public boolean isGatheringMinerals() {
-		return this.gatheringMinerals;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_GATHERING_MINERALS) != 0;
 	}
 
 	public boolean isHallucination() {
-		return this.hallucination;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_HALLUCINATION) != 0;
 	}
 
 	public boolean isHoldingPosition() {
-		return this.holdingPosition;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_HOLDING_POSITION) != 0;
 	}
 
 	public boolean isIdle() {
-		return this.idle;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_IDLE) != 0;
 	}
 
 	public boolean isInterruptable() {
-		return this.interruptable;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_INTERRUPTABLE) != 0;
 	}
 
 	public boolean isInvincible() {
-		return this.invincible;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_INVINCIBLE) != 0;
 	}
 
 	public boolean isIrradiated() {
-		return this.irradiated;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_IRRADIATED) != 0;
 	}
 
 	public boolean isLifted() {
-		return this.lifted;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_LIFTED) != 0;
 	}
 
 	public boolean isLoaded() {
-		return this.loaded;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_LOADED) != 0;
 	}
 
 	public boolean isLockedDown() {
-		return this.lockedDown;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_LOCKED_DOWN) != 0;
 	}
 
 	public boolean isMaelstrommed() {
-		return this.maelstrommed;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_MAELSTROMMED) != 0;
 	}
 
 	public boolean isMorphing() {
-		return this.morphing;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_MORPHING) != 0;
 	}
 
 	public boolean isMoving() {
-		return this.moving;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_MOVING) != 0;
 	}
 
 	public boolean isParasited() {
-		return this.parasited;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_PARASITED) != 0;
 	}
 
 	public boolean isPatrolling() {
-		return this.patrolling;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_PATROLLING) != 0;
 	}
 
 	public boolean isPlagued() {
-		return this.plagued;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_PLAGUED) != 0;
 	}
 
 	public boolean isRepairing() {
-		return this.repairing;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_REPAIRING) != 0;
 	}
 
 	public boolean isSelected() {
-		return this.selected;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_SELECTED) != 0;
 	}
 
 	public boolean isSieged() {
-		return this.sieged;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_SIEGED) != 0;
 	}
 
 	public boolean isStartingAttack() {
-		return this.startingAttack;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_STARTING_ATTACK) != 0;
 	}
 
 	public boolean isStasised() {
-		return this.stasised;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_STASISED) != 0;
 	}
 
 	public boolean isStimmed() {
-		return this.stimmed;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_STIMMED) != 0;
 	}
 
 	public boolean isStuck() {
-		return this.stuck;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_STUCK) != 0;
 	}
 
 	public boolean isTraining() {
-		return this.training;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_TRAINING) != 0;
 	}
 
 	public boolean isUnderAttack() {
-		return this.underAttack;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_UNDER_ATTACK) != 0;
 	}
 
 	public boolean isUnderDarkSwarm() {
-		return this.underDarkSwarm;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_UNDER_DARK_SWARM) != 0;
 	}
 
 	public boolean isUnderDisruptionWeb() {
-		return this.underDisruptionWeb;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_UNDER_DISRUPTION_WEB) != 0;
 	}
 
 	public boolean isUnderStorm() {
-		return this.underStorm;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_UNDER_STORM) != 0;
 	}
 
 	public boolean isUnpowered() {
-		return this.unpowered;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_UNPOWERED) != 0;
 	}
 
 	public boolean isUpgrading() {
-		return this.upgrading;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_UPGRADING) != 0;
 	}
 
 	public boolean isVisible() {
-		return this.visible;
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & FLAG_VISIBLE) != 0;
+	}
+
+	/** Returns all boolean attributes as a bitset of FLAG_ constants */
+	public long getFlags() {
+		requireGroup(GROUP_FLAGS);
+		return this.flags;
+	}
+
+	/** Returns true if every flag set in mask is set for this unit */
+	public boolean hasAllFlags(long mask) {
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & mask) == mask;
+	}
+
+	/** Returns true if at least one flag set in mask is set for this unit */
+	public boolean hasAnyFlag(long mask) {
+		requireGroup(GROUP_FLAGS);
+		return (this.flags & mask) != 0;
 	}
 
 	public boolean isVisible(Player p) {
@@ -0,0 +1,98 @@
+package jnibwapi;
+
+import java.util.Arrays;
+
+/**
+ * Log of the units which changed in the current frame, grouped by kind of
+ * change, recorded while the bridge's unit delta is applied. Obtain it from
+ * {@link JNIBWAPI#getUnitChanges()}; it is refilled in place at the start of each
+ * frame, so modules reacting to changes only need to look at the units listed.
+ *
+ * <pre>
+ * UnitChanges changes = bwapi.getUnitChanges();
+ * for (int i = 0; i &lt; changes.size(UnitChanges.DAMAGED); i++) {
+ * 	Unit unit = bwapi.getUnit(changes.getUnitID(UnitChanges.DAMAGED, i));
+ * 	...
+ * }
+ * </pre>
+ */
+public class UnitChanges {
+	/** Units which appeared, including at the start of a game */
+	public static final int ADDED = 1 << 0;
+	/** Units which were destroyed or are no longer accessible */
+	public static final int REMOVED = 1 << 1;
+	public static final int POSITION = 1 << 2;
+	/** Hit points or shields changed */
+	public static final int HIT_POINTS = 1 << 3;
+	/** Hit points plus shields decreased */
+	public static final int DAMAGED = 1 << 4;
+	public static final int ORDER = 1 << 5;
+	/** The unit morphed into another type */
+	public static final int TYPE = 1 << 6;
+	/** The unit changed owner */
+	public static final int PLAYER = 1 << 7;
+	/** The unit was completed, or became incomplete again */
+	public static final int COMPLETION = 1 << 8;
+	/** The unit became visible or invisible to self */
+	public static final int VISIBILITY = 1 << 9;
+	private static final int numKinds = 10;
+
+	private final int[][] unitIDs = new int[numKinds][16];
+	private final int[] counts = new int[numKinds];
+
+	UnitChanges() {
+	}
+
+	/** Number of units with the given kind of change in the current frame */
+	public int size(int change) {
+		return this.counts[kind(change)];
+	}
+
+	/** ID of the index'th unit with the given kind of change in the current frame */
+	public int getUnitID(int change, int index) {
+		int kind = kind(change);
+		if (index < 0 || index >= this.counts[kind]) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.counts[kind]);
+		}
+		return this.unitIDs[kind][index];
+	}
+
+	/**
+	 * Writes the IDs of the units with the given kind of change into ids, which can
+	 * be reused between frames. Returns the number of units; if it is larger than
+	 * ids.length, only the first ids.length IDs are written.
+	 */
+	public int getUnitIDs(int change, int[] ids) {
+		int kind = kind(change);
+		System.arraycopy(this.unitIDs[kind], 0, ids, 0, Math.min(this.counts[kind], ids.length));
+		return this.counts[kind];
+	}
+
+	void clear() {
+		Arrays.fill(this.counts, 0);
+	}
+
+	/** Records the unit under each kind of change set in the changes mask */
+	void record(int unitID, int changes) {
+		while (changes != 0) {
+			int kind = Integer.numberOfTrailingZeros(changes);
+			changes &= changes - 1;
+			if (kind >= numKinds) {
+				break;
+			}
+			int[] ids = this.unitIDs[kind];
+			if (this.counts[kind] == ids.length) {
+				ids = Arrays.copyOf(ids, ids.length * 2);
+				this.unitIDs[kind] = ids;
+			}
+			ids[this.counts[kind]++] = unitID;
+		}
+	}
+
+	private static int kind(int change) {
+		if (Integer.bitCount(change) != 1 || Integer.numberOfTrailingZeros(change) >= numKinds) {
+			throw new IllegalArgumentException("Not a single kind of change: " + change);
+		}
+		return Integer.numberOfTrailingZeros(change);
+	}
+}
@@ -0,0 +1,317 @@
+package jnibwapi;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Position, hit points and shields of every unit over the most recent frames,
+ * kept in a fixed-size ring buffer outside the Java heap. Enabled with
+ * {@link JNIBWAPI#enableUnitHistory(int, int)} and filled at the start of each
+ * frame, after the units are updated.
+ *
+ * Each unit is given a slot while it exists, which stays reserved after the
+ * unit is removed until its last recorded frame leaves the ring, so the recent
+ * history of lost units can still be read. Each frame of the ring holds one
+ * column per attribute, indexed by slot, along with the ID of the unit in each
+ * slot, so a slot reused by a later unit is not mistaken for the earlier one.
+ * If all slots are in use or reserved, further units are not recorded.
+ *
+ * Attributes in unsubscribed groups (see
+ * {@link JNIBWAPI#setUnitAttributeGroups(int)}) are recorded as zero.
+ */
+public class UnitHistory {
+	// columns of each frame, in order
+	private static final int UNIT_ID = 0;
+	private static final int X = 1;
+	private static final int Y = 2;
+	private static final int HIT_POINTS = 3;
+	private static final int SHIELDS = 4;
+	private static final int numColumns = 5;
+
+	private final int numFrames;
+	private final int numSlots;
+	private final IntBuffer data;
+	/** Game frame of each frame of the ring */
+	private final int[] gameFrames;
+	/** Index in the ring of the most recent frame */
+	private int current = -1;
+	/** Number of frames recorded, up to numFrames */
+	private int recorded = 0;
+	/** Number of frames recorded since the history was cleared */
+	private int totalRecorded = 0;
+
+	/** Slot of each unit plus one, indexed by unit ID; 0 if the unit has no slot */
+	private int[] slotOfUnit = new int[256];
+	private final int[] freeSlots;
+	private int numFreeSlots;
+	/** Value of totalRecorded at which each reserved slot is freed, 0 if the slot is not reserved */
+	private final int[] releaseAt;
+	/** Reserved slots in order of release, as a ring of (slot, unit ID, releaseAt) entries */
+	private int[] releaseQueue = new int[3 * 64];
+	private int releaseHead = 0;
+	private int releaseSize = 0;
+	private int groups;
+
+	/**
+	 * Creates a history of the given number of frames, using as many unit slots as
+	 * fit in maxBytes.
+	 */
+	UnitHistory(int numFrames, int maxBytes, int groups) {
+		if (numFrames < 1) {
+			throw new IllegalArgumentException("numFrames must be positive: " + numFrames);
+		}
+		this.numFrames = numFrames;
+		this.numSlots = maxBytes / (numFrames * numColumns * 4);
+		if (this.numSlots < 1) {
+			throw new IllegalArgumentException(maxBytes + " bytes cannot hold " + numFrames + " frames");
+		}
+		this.data = ByteBuffer.allocateDirect(numFrames * numColumns * this.numSlots * 4)
+				.order(ByteOrder.nativeOrder()).asIntBuffer();
+		this.gameFrames = new int[numFrames];
+		this.freeSlots = new int[this.numSlots];
+		for (int i = 0; i < this.numSlots; i++) {
+			this.freeSlots[i] = this.numSlots - 1 - i;
+		}
+		this.numFreeSlots = this.numSlots;
+		this.releaseAt = new int[this.numSlots];
+		this.groups = groups;
+	}
+
+	/** Number of frames kept */
+	public int getCapacity() {
+		return this.numFrames;
+	}
+
+	/** Number of units which can be recorded at the same time */
+	public int getSlotCount() {
+		return this.numSlots;
+	}
+
+	/** Number of frames recorded so far, up to {@link #getCapacity()} */
+	public int getFrameCount() {
+		return this.recorded;
+	}
+
+	/** Game frame recorded framesAgo frames before the most recent one */
+	public int getGameFrame(int framesAgo) {
+		return this.gameFrames[frameIndex(framesAgo)];
+	}
+
+	/** Returns true if the unit was recorded framesAgo frames before the most recent one */
+	public boolean isRecorded(int unitID, int framesAgo) {
+		return offset(unitID, framesAgo) >= 0;
+	}
+
+	/** Returns the unit's position framesAgo frames before the most recent one, or null if not recorded */
+	public Position getHistoricalPosition(int unitID, int framesAgo) {
+		int offset = offset(unitID, framesAgo);
+		if (offset < 0) {
+			return null;
+		}
+		return new Position(this.data.get(offset + X * this.numSlots), this.data.get(offset + Y * this.numSlots));
+	}
+
+	/** Returns the unit's x pixel coordinate framesAgo frames ago, or 0 if not recorded */
+	public int getHistoricalX(int unitID, int framesAgo) {
+		return get(unitID, framesAgo, X);
+	}
+
+	/** Returns the unit's y pixel coordinate framesAgo frames ago, or 0 if not recorded */
+	public int getHistoricalY(int unitID, int framesAgo) {
+		return get(unitID, framesAgo, Y);
+	}
+
+	/** Returns the unit's hit points framesAgo frames ago, or 0 if not recorded */
+	public int getHistoricalHitPoints(int unitID, int framesAgo) {
+		return get(unitID, framesAgo, HIT_POINTS);
+	}
+
+	/** Returns the unit's shields framesAgo frames ago, or 0 if not recorded */
+	public int getHistoricalShields(int unitID, int framesAgo) {
+		return get(unitID, framesAgo, SHIELDS);
+	}
+
+	/**
+	 * Returns the change in the unit's hit points plus shields over the last window
+	 * frames, negative if it took damage. The window is shortened to the frames
+	 * for which the unit was recorded.
+	 */
+	public int getHitPointDelta(int unitID, int window) {
+		int framesAgo = oldestRecorded(unitID, window);
+		if (framesAgo <= 0) {
+			return 0;
+		}
+		return get(unitID, 0, HIT_POINTS) + get(unitID, 0, SHIELDS) - get(unitID, framesAgo, HIT_POINTS)
+				- get(unitID, framesAgo, SHIELDS);
+	}
+
+	/**
+	 * Returns the unit's average velocity along x over the last window frames, in
+	 * pixels per frame. The window is shortened to the frames for which the unit
+	 * was recorded.
+	 */
+	public double getVelocityX(int unitID, int window) {
+		int framesAgo = oldestRecorded(unitID, window);
+		if (framesAgo <= 0) {
+			return 0;
+		}
+		return (double) (get(unitID, 0, X) - get(unitID, framesAgo, X)) / framesAgo;
+	}
+
+	/** As {@link #getVelocityX(int, int)}, along y */
+	public double getVelocityY(int unitID, int window) {
+		int framesAgo = oldestRecorded(unitID, window);
+		if (framesAgo <= 0) {
+			return 0;
+		}
+		return (double) (get(unitID, 0, Y) - get(unitID, framesAgo, Y)) / framesAgo;
+	}
+
+	/** Forgets all units and frames, for the start of a game with the given attribute groups */
+	void clear(int groups) {
+		this.groups = groups;
+		Arrays.fill(this.slotOfUnit, 0);
+		for (int i = 0; i < this.numSlots; i++) {
+			this.freeSlots[i] = this.numSlots - 1 - i;
+		}
+		this.numFreeSlots = this.numSlots;
+		Arrays.fill(this.releaseAt, 0);
+		this.releaseHead = 0;
+		this.releaseSize = 0;
+		this.current = -1;
+		this.recorded = 0;
+		this.totalRecorded = 0;
+	}
+
+	/**
+	 * Reserves the slot of a removed unit until its last recorded frame leaves the
+	 * ring, so that its history stays accessible until then
+	 */
+	void unitRemoved(Unit unit) {
+		int id = unit.getID();
+		if (id < this.slotOfUnit.length && this.slotOfUnit[id] != 0) {
+			int slot = this.slotOfUnit[id] - 1;
+			// the last recorded frame is overwritten by the numFrames-th frame after it
+			int releaseAt = this.totalRecorded + this.numFrames;
+			this.releaseAt[slot] = releaseAt;
+			if (3 * this.releaseSize == this.releaseQueue.length) {
+				int[] queue = new int[this.releaseQueue.length * 2];
+				for (int i = 0; i < this.releaseSize; i++) {
+					System.arraycopy(this.releaseQueue, queueIndex(i), queue, 3 * i, 3);
+				}
+				this.releaseQueue = queue;
+				this.releaseHead = 0;
+			}
+			int index = queueIndex(this.releaseSize++);
+			this.releaseQueue[index] = slot;
+			this.releaseQueue[index + 1] = id;
+			this.releaseQueue[index + 2] = releaseAt;
+		}
+	}
+
+	/** Index in the release queue of the entry at the given position from its head */
+	private int queueIndex(int position) {
+		return (this.releaseHead + 3 * position) % this.releaseQueue.length;
+	}
+
+	/** Frees the reserved slots whose unit's last recorded frame is overwritten by the next frame */
+	private void releaseSlots() {
+		while (this.releaseSize > 0) {
+			int slot = this.releaseQueue[this.releaseHead];
+			int id = this.releaseQueue[this.releaseHead + 1];
+			int releaseAt = this.releaseQueue[this.releaseHead + 2];
+			if (releaseAt > this.totalRecorded) {
+				break;
+			}
+			// the reservation was cancelled or renewed if the unit came back
+			if (this.releaseAt[slot] == releaseAt) {
+				this.releaseAt[slot] = 0;
+				this.freeSlots[this.numFreeSlots++] = slot;
+				this.slotOfUnit[id] = 0;
+			}
+			this.releaseHead = queueIndex(1);
+			this.releaseSize--;
+		}
+	}
+
+	/** Records the current state of all units as the most recent frame */
+	void record(int gameFrame, UnitTable units) {
+		this.totalRecorded++;
+		releaseSlots();
+		this.current = (this.current + 1) % this.numFrames;
+		this.recorded = Math.min(this.recorded + 1, this.numFrames);
+		this.gameFrames[this.current] = gameFrame;
+		int base = this.current * numColumns * this.numSlots;
+		for (int slot = 0; slot < this.numSlots; slot++) {
+			this.data.put(base + slot, -1);
+		}
+		boolean position = (this.groups & Unit.GROUP_POSITION) != 0;
+		boolean combat = (this.groups & Unit.GROUP_COMBAT) != 0;
+		for (int i = 0; i < units.size(); i++) {
+			Unit unit = units.getPacked(i);
+			int slot = slot(unit.getID());
+			if (slot < 0) {
+				continue;
+			}
+			this.data.put(base + UNIT_ID * this.numSlots + slot, unit.getID());
+			this.data.put(base + X * this.numSlots + slot, position ? unit.getX() : 0);
+			this.data.put(base + Y * this.numSlots + slot, position ? unit.getY() : 0);
+			this.data.put(base + HIT_POINTS * this.numSlots + slot, combat ? unit.getHitPoints() : 0);
+			this.data.put(base + SHIELDS * this.numSlots + slot, combat ? unit.getShields() : 0);
+		}
+	}
+
+	/** Returns the unit's slot, assigning a free one if it has none, or -1 if all are in use */
+	private int slot(int unitID) {
+		if (unitID >= this.slotOfUnit.length) {
+			this.slotOfUnit = Arrays.copyOf(this.slotOfUnit, Math.max(this.slotOfUnit.length * 2, unitID + 1));
+		}
+		if (this.slotOfUnit[unitID] == 0) {
+			if (this.numFreeSlots == 0) {
+				return -1;
+			}
+			this.slotOfUnit[unitID] = this.freeSlots[--this.numFreeSlots] + 1;
+		}
+		int slot = this.slotOfUnit[unitID] - 1;
+		// a unit that came back before its slot was freed keeps it
+		this.releaseAt[slot] = 0;
+		return slot;
+	}
+
+	private int frameIndex(int framesAgo) {
+		if (framesAgo < 0 || framesAgo >= this.recorded) {
+			throw new IndexOutOfBoundsException("framesAgo: " + framesAgo + ", frames recorded: " + this.recorded);
+		}
+		return (this.current - framesAgo + this.numFrames) % this.numFrames;
+	}
+
+	/**
+	 * Returns the index of the unit's slot in the UNIT_ID column of the frame, or
+	 * -1 if the unit was not recorded in that frame
+	 */
+	private int offset(int unitID, int framesAgo) {
+		if (unitID < 0 || unitID >= this.slotOfUnit.length || this.slotOfUnit[unitID] == 0 || framesAgo < 0
+				|| framesAgo >= this.recorded) {
+			return -1;
+		}
+		int offset = frameIndex(framesAgo) * numColumns * this.numSlots + this.slotOfUnit[unitID] - 1;
+		return (this.data.get(offset) == unitID) ? offset : -1;
+	}
+
+	private int get(int unitID, int framesAgo, int column) {
+		int offset = offset(unitID, framesAgo);
+		return (offset < 0) ? 0 : this.data.get(offset + column * this.numSlots);
+	}
+
+	/** Returns the largest frames ago up to window at which the unit was recorded, or -1 */
+	private int oldestRecorded(int unitID, int window) {
+		for (int framesAgo = Math.min(window, this.recorded - 1); framesAgo >= 0; framesAgo--) {
+			if (offset(unitID, framesAgo) >= 0) {
+				return framesAgo;
+			}
+		}
+		return -1;
+	}
+}
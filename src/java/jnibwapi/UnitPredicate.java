@@ -0,0 +1,9 @@
+package jnibwapi;
+
+/**
+ * Condition over a unit deciding its membership of a {@link UnitView}, see
+ * {@link JNIBWAPI#createUnitView(UnitPredicate)}.
+ */
+public interface UnitPredicate {
+	public boolean test(Unit unit);
+}
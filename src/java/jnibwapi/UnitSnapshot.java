@@ -0,0 +1,109 @@
+package jnibwapi;
+
+import jnibwapi.types.UnitType;
+import jnibwapi.types.UnitType.UnitTypes;
+
+/**
+ * Immutable copy of a unit's attributes in a {@link FrameSnapshot}. Unchanged
+ * units share the same instance between consecutive snapshots.
+ *
+ * Attributes in groups that are not subscribed (see
+ * {@link JNIBWAPI#setUnitAttributeGroups(int)}) read as zero.
+ */
+public class UnitSnapshot {
+	/** The unit's attributes, indexed by their position in the bridge's unit record */
+	private final int[] record;
+	/** First and last build version of the snapshots containing this record, see FrameSnapshotBuilder */
+	int firstVersion;
+	int lastVersion = Integer.MAX_VALUE;
+
+	UnitSnapshot(int[] record) {
+		this.record = record;
+	}
+
+	int[] getRecord() {
+		return this.record;
+	}
+
+	/** Returns an attribute by its position in the bridge's unit record, one of the Unit.ATTR_* constants */
+	public int getAttribute(int attribute) {
+		return this.record[attribute];
+	}
+
+	public int getID() {
+		return this.record[Unit.ATTR_ID];
+	}
+
+	public int getPlayerID() {
+		return this.record[Unit.ATTR_PLAYER];
+	}
+
+	public int getTypeID() {
+		return this.record[Unit.ATTR_TYPE];
+	}
+
+	public UnitType getType() {
+		return UnitTypes.getUnitType(this.record[Unit.ATTR_TYPE]);
+	}
+
+	public int getX() {
+		return this.record[Unit.ATTR_X];
+	}
+
+	public int getY() {
+		return this.record[Unit.ATTR_Y];
+	}
+
+	public Position getPosition() {
+		return new Position(this.record[Unit.ATTR_X], this.record[Unit.ATTR_Y]);
+	}
+
+	public int getHitPoints() {
+		return this.record[Unit.ATTR_HIT_POINTS];
+	}
+
+	public int getShields() {
+		return this.record[Unit.ATTR_SHIELDS];
+	}
+
+	public int getEnergy() {
+		return this.record[Unit.ATTR_ENERGY];
+	}
+
+	public int getResources() {
+		return this.record[Unit.ATTR_RESOURCES];
+	}
+
+	public int getTargetUnitID() {
+		return this.record[Unit.ATTR_TARGET_UNIT];
+	}
+
+	public int getOrderID() {
+		return this.record[Unit.ATTR_ORDER];
+	}
+
+	public int getOrderTargetID() {
+		return this.record[Unit.ATTR_ORDER_TARGET];
+	}
+
+	/** Returns the boolean attributes as a bitmask of the Unit.FLAG_* constants */
+	public long getFlags() {
+		return (this.record[Unit.ATTR_FLAGS_LOW] & 0xFFFFFFFFL) | ((long) this.record[Unit.ATTR_FLAGS_HIGH] << 32);
+	}
+
+	public boolean hasAllFlags(long mask) {
+		return (getFlags() & mask) == mask;
+	}
+
+	public boolean hasAnyFlag(long mask) {
+		return (getFlags() & mask) != 0;
+	}
+
+	public boolean isCompleted() {
+		return hasAnyFlag(Unit.FLAG_COMPLETED);
+	}
+
+	public boolean isVisible() {
+		return hasAnyFlag(Unit.FLAG_VISIBLE);
+	}
+}
@@ -0,0 +1,110 @@
+package jnibwapi;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Table of the units in the game, indexed by ID. BWAPI unit IDs are small and
+ * dense within a game, so lookups index an array instead of boxing and hashing
+ * the ID. The live units are also kept packed in a second array for iteration;
+ * when a unit is removed the last unit is moved into its slot, so freed slots
+ * are reused without leaving gaps.
+ */
+class UnitTable extends AbstractCollection<Unit> {
+	private Unit[] byID = new Unit[1024];
+	/** Position of each unit in the packed array, indexed by ID */
+	private int[] slotOf = new int[1024];
+	private Unit[] packed = new Unit[1024];
+	private int size = 0;
+
+	public Unit get(int unitID) {
+		if (unitID < 0 || unitID >= this.byID.length) {
+			return null;
+		}
+		return this.byID[unitID];
+	}
+
+	public void put(Unit unit) {
+		int unitID = unit.getID();
+		if (unitID >= this.byID.length) {
+			int length = Math.max(this.byID.length * 2, unitID + 1);
+			this.byID = Arrays.copyOf(this.byID, length);
+			this.slotOf = Arrays.copyOf(this.slotOf, length);
+		}
+		if (this.byID[unitID] != null) {
+			this.packed[this.slotOf[unitID]] = unit;
+		} else {
+			if (this.size == this.packed.length) {
+				this.packed = Arrays.copyOf(this.packed, this.packed.length * 2);
+			}
+			this.slotOf[unitID] = this.size;
+			this.packed[this.size++] = unit;
+		}
+		this.byID[unitID] = unit;
+	}
+
+	/** Removes the unit with the given ID, returning it or null if there was none */
+	public Unit remove(int unitID) {
+		Unit unit = get(unitID);
+		if (unit == null) {
+			return null;
+		}
+		int slot = this.slotOf[unitID];
+		Unit last = this.packed[--this.size];
+		this.packed[slot] = last;
+		this.slotOf[last.getID()] = slot;
+		this.packed[this.size] = null;
+		this.byID[unitID] = null;
+		return unit;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.byID, null);
+		Arrays.fill(this.packed, 0, this.size, null);
+		this.size = 0;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	/** Returns the live unit at the given position, from 0 to size() - 1 */
+	public Unit getPacked(int index) {
+		return this.packed[index];
+	}
+
+	public void visitAll(UnitVisitor visitor) {
+		for (int i = 0; i < this.size; i++) {
+			visitor.visit(this.packed[i]);
+		}
+	}
+
+	@Override
+	public Iterator<Unit> iterator() {
+		return new Iterator<Unit>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.next < UnitTable.this.size;
+			}
+
+			@Override
+			public Unit next() {
+				if (this.next >= UnitTable.this.size) {
+					throw new NoSuchElementException();
+				}
+				return UnitTable.this.packed[this.next++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -0,0 +1,97 @@
+package jnibwapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import jnibwapi.types.UnitType;
+import jnibwapi.types.UnitType.UnitTypes;
+
+/**
+ * Units of one player relation grouped by UnitType ID, with total and completed
+ * counts. Refilled in place each frame by JNIBWAPI alongside the cached unit
+ * lists; only the types added since the last clear are reset, so a clear costs
+ * the number of types present rather than the number of types in the game.
+ */
+class UnitTypeIndex {
+	private ArrayList<Unit>[] units;
+	private List<Unit>[] views;
+	private int[] total;
+	private int[] completed;
+	/** IDs of the types with at least one unit, so that clear() only resets those */
+	private int[] present;
+	private int numPresent = 0;
+
+	UnitTypeIndex() {
+		int highestIDUnitType = 0;
+		for (UnitType type : UnitTypes.getAllUnitTypes()) {
+			highestIDUnitType = Math.max(highestIDUnitType, type.getID());
+		}
+		allocate(highestIDUnitType + 1);
+	}
+
+	void clear() {
+		for (int i = 0; i < this.numPresent; i++) {
+			int typeID = this.present[i];
+			this.units[typeID].clear();
+			this.total[typeID] = 0;
+			this.completed[typeID] = 0;
+		}
+		this.numPresent = 0;
+	}
+
+	void add(Unit unit, int typeID, boolean isCompleted) {
+		if (typeID < 0) {
+			return;
+		}
+		if (typeID >= this.units.length) {
+			allocate(typeID + 1);
+		}
+		if (this.total[typeID] == 0) {
+			this.present[this.numPresent++] = typeID;
+		}
+		ArrayList<Unit> list = this.units[typeID];
+		if (list == null) {
+			list = new ArrayList<>();
+			this.units[typeID] = list;
+			this.views[typeID] = Collections.unmodifiableList(list);
+		}
+		list.add(unit);
+		this.total[typeID]++;
+		if (isCompleted) {
+			this.completed[typeID]++;
+		}
+	}
+
+	List<Unit> getUnits(int typeID) {
+		if (typeID < 0 || typeID >= this.views.length || this.views[typeID] == null) {
+			return Collections.emptyList();
+		}
+		return this.views[typeID];
+	}
+
+	int count(int typeID) {
+		return (typeID < 0 || typeID >= this.total.length) ? 0 : this.total[typeID];
+	}
+
+	int countCompleted(int typeID) {
+		return (typeID < 0 || typeID >= this.completed.length) ? 0 : this.completed[typeID];
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void allocate(int size) {
+		int oldSize = (this.units == null) ? 0 : this.units.length;
+		ArrayList<Unit>[] newUnits = new ArrayList[size];
+		List<Unit>[] newViews = new List[size];
+		if (oldSize > 0) {
+			System.arraycopy(this.units, 0, newUnits, 0, oldSize);
+			System.arraycopy(this.views, 0, newViews, 0, oldSize);
+		}
+		this.units = newUnits;
+		this.views = newViews;
+		this.total = (oldSize > 0) ? Arrays.copyOf(this.total, size) : new int[size];
+		this.completed = (oldSize > 0) ? Arrays.copyOf(this.completed, size) : new int[size];
+		this.present = (oldSize > 0) ? Arrays.copyOf(this.present, size) : new int[size];
+	}
+}
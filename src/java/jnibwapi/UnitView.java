@@ -0,0 +1,110 @@
+package jnibwapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of units matching a predicate, kept up to date by JNIBWAPI at the start
+ * of each frame. All registered views are evaluated in a single pass over the
+ * units, rather than each derived set scanning all units itself. Create one with
+ * {@link JNIBWAPI#createUnitView(UnitPredicate)}.
+ *
+ * The predicate is evaluated for every unit each frame, so it may depend on
+ * state other than the unit's own, but it should be cheap.
+ */
+public class UnitView {
+	private final UnitPredicate predicate;
+	private final ArrayList<Unit> members = new ArrayList<>();
+	private final List<Unit> membersView = Collections.unmodifiableList(this.members);
+	/** Position in members plus one, indexed by unit ID; 0 if not a member */
+	private int[] positions = new int[256];
+	private final List<UnitViewListener> listeners = new ArrayList<>();
+
+	UnitView(UnitPredicate predicate) {
+		this.predicate = predicate;
+	}
+
+	public UnitPredicate getPredicate() {
+		return this.predicate;
+	}
+
+	/**
+	 * Returns the units currently in the view. The list is updated in place, in
+	 * no particular order; copy it to keep a previous frame's members.
+	 */
+	public List<Unit> getUnits() {
+		return this.membersView;
+	}
+
+	public int size() {
+		return this.members.size();
+	}
+
+	public boolean contains(Unit unit) {
+		int id = unit.getID();
+		return id >= 0 && id < this.positions.length && this.positions[id] != 0;
+	}
+
+	public void addListener(UnitViewListener listener) {
+		this.listeners.add(listener);
+	}
+
+	public void removeListener(UnitViewListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/** Re-evaluates the predicate for the unit, adding or removing it as needed */
+	void update(Unit unit) {
+		boolean matches = this.predicate.test(unit);
+		if (matches != contains(unit)) {
+			if (matches) {
+				add(unit);
+			} else {
+				remove(unit);
+			}
+		}
+	}
+
+	/** Removes a unit that no longer exists, if it was a member */
+	void unitDestroyed(Unit unit) {
+		if (contains(unit)) {
+			remove(unit);
+		}
+	}
+
+	/** Empties the view without notifying the listeners, for the start of a game */
+	void clear() {
+		for (Unit unit : this.members) {
+			this.positions[unit.getID()] = 0;
+		}
+		this.members.clear();
+	}
+
+	private void add(Unit unit) {
+		int id = unit.getID();
+		if (id >= this.positions.length) {
+			this.positions = Arrays.copyOf(this.positions, Math.max(this.positions.length * 2, id + 1));
+		}
+		this.members.add(unit);
+		this.positions[id] = this.members.size();
+		for (UnitViewListener listener : this.listeners) {
+			listener.unitAdded(this, unit);
+		}
+	}
+
+	private void remove(Unit unit) {
+		// swap the last member into the removed unit's place
+		int position = this.positions[unit.getID()] - 1;
+		Unit last = this.members.remove(this.members.size() - 1);
+		if (last != unit) {
+			this.members.set(position, last);
+			this.positions[last.getID()] = position + 1;
+		}
+		this.positions[unit.getID()] = 0;
+		for (UnitViewListener listener : this.listeners) {
+			listener.unitRemoved(this, unit);
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package jnibwapi;
+
+/**
+ * Interface for notifications of units joining or leaving a {@link UnitView}.
+ * Called while the game state is updated at the start of a frame, before the
+ * frame's events, once the cached unit lists are up to date.
+ */
+public interface UnitViewListener {
+	public void unitAdded(UnitView view, Unit unit);
+
+	/** Also called when a member unit is destroyed or no longer visible */
+	public void unitRemoved(UnitView view, Unit unit);
+}
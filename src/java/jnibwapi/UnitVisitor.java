@@ -0,0 +1,9 @@
+package jnibwapi;
+
+/**
+ * Callback for iterating over units without allocating, see
+ * {@link JNIBWAPI#forEachUnit(UnitVisitor)}.
+ */
+public interface UnitVisitor {
+	public void visit(Unit unit);
+}
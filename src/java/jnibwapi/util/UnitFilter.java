@@ -0,0 +1,17 @@
+package jnibwapi.util;
+
+/**
+ * Filter masks for the spatial unit queries in JNIBWAPI, e.g.
+ * getUnitsInRadius. A unit matches if its owner matches one of the relation
+ * bits and, if either AIR or GROUND is set, it is in one of the given layers.
+ */
+public class UnitFilter {
+	public static final int SELF = 1 << 0;
+	public static final int ALLIED = 1 << 1;
+	public static final int ENEMY = 1 << 2;
+	public static final int NEUTRAL = 1 << 3;
+	public static final int ANY_PLAYER = SELF | ALLIED | ENEMY | NEUTRAL;
+	/** Flying units and lifted buildings */
+	public static final int AIR = 1 << 4;
+	public static final int GROUND = 1 << 5;
+}